@@ -0,0 +1,40 @@
+package com.example.indexer.lucene;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar: the regular JMH command line, plus the
+ * allocation profiler (-prof gc) and a JSON result file unless the command
+ * line sets its own, so two branches are compared on the same numbers.
+ *
+ *   java -jar benchmarks/jmh/target/benchmarks.jar [jmh options] [regex]
+ */
+public class BenchmarkMain {
+
+    private static final String DEFAULT_RESULT = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+        boolean gc = cmd.getProfilers().stream().anyMatch(p -> p.getKlass().equals("gc")
+                || p.getKlass().equals(GCProfiler.class.getName()));
+        if (!gc) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (cmd.getResult().hasValue() || cmd.getResultFormat().hasValue()) {
+            new Runner(options.build()).run();
+            return;
+        }
+        new Runner(options.resultFormat(ResultFormatType.JSON).result(DEFAULT_RESULT).build()).run();
+    }
+}
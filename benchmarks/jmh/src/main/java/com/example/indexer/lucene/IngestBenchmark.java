@@ -0,0 +1,131 @@
+package com.example.indexer.lucene;
+
+import com.example.indexer.bench.SyntheticCorpus;
+import com.example.indexer.model.IndexDocument;
+import com.example.indexer.semantic.BatchingEmbedder;
+import com.example.indexer.semantic.HashingEmbeddingProvider;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-document ingestion: building a file's block (chunking, rank signals,
+ * fields), analyzing one chunk for every text field it is indexed into, and
+ * the full upsert into an on-disk index with group commits. Embeddings are
+ * off; they are an HTTP call or a hash away and measured elsewhere
+ * (IndexingThroughputBenchmark).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestBenchmark {
+
+    private static final String[] CHUNK_FIELDS = {"code", SearchAnalyzer.SYMBOLS, SearchAnalyzer.TRIGRAMS};
+
+    @Param("2000")
+    public int docs;
+
+    private Path dir;
+    private PrintStream out;
+    private LuceneWriter writer;
+    private Analyzer analyzer;
+    private List<IndexDocument> corpus;
+    private List<String> chunks;
+    private int nextDoc;
+    private int nextChunk;
+    private long revision;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        corpus = new SyntheticCorpus(42).generate(docs);
+        CodeChunker chunker = new CodeChunker(60, 10, true);
+        chunks = new ArrayList<>();
+        for (IndexDocument doc : corpus) {
+            chunker.split(doc.getCode()).forEach(c -> chunks.add(c.text()));
+        }
+        analyzer = new SearchAnalyzer().buildForIndexing();
+
+        // the writer still prints per document
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        dir = Files.createTempDirectory("dcse-jmh-");
+        BatchingEmbedder embedder = new BatchingEmbedder(new HashingEmbeddingProvider(256), "", 64, 0, 4, 1, 1);
+        writer = new LuceneWriter(new SearchAnalyzer(), new DefaultRankSignalExtractor(),
+                new CodeChunker(60, 10, true), embedder, false, 60_000, "none", false,
+                dir.toString(), 1, "id", 500, 1000, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        writer.close();
+        System.setOut(out);
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private IndexDocument nextDoc() {
+        nextDoc = (nextDoc + 1) % corpus.size();
+        return corpus.get(nextDoc);
+    }
+
+    @Benchmark
+    public List<Document> buildBlock() {
+        return writer.buildBlock(nextDoc());
+    }
+
+    @Benchmark
+    public long analyzeChunk() throws IOException {
+        nextChunk = (nextChunk + 1) % chunks.size();
+        String text = chunks.get(nextChunk);
+        long tokens = 0;
+        for (String field : CHUNK_FIELDS) {
+            try (TokenStream stream = analyzer.tokenStream(field, text)) {
+                stream.reset();
+                while (stream.incrementToken()) {
+                    tokens++;
+                }
+                stream.end();
+            }
+        }
+        return tokens;
+    }
+
+    /** an upsert of a changed file, committed in batches as RedisConsumer does */
+    @Benchmark
+    public void addDocument() throws IOException {
+        IndexDocument doc = nextDoc();
+        doc.setHash(Long.toString(revision++));
+        writer.addDocument(doc);
+        if (writer.isCommitDue()) {
+            writer.commit();
+        }
+    }
+}
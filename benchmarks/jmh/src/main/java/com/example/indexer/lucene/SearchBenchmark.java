@@ -0,0 +1,167 @@
+package com.example.indexer.lucene;
+
+import com.example.indexer.api.SearchResult;
+import com.example.indexer.bench.SyntheticCorpus;
+import com.example.indexer.model.IndexDocument;
+import com.example.indexer.semantic.BatchingEmbedder;
+import com.example.indexer.semantic.HashingEmbeddingProvider;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The phases of one lexical search, each on its own, over an index of the
+ * synthetic corpus: query building, candidate collection (BM25 over chunks,
+ * best chunk per file, signal boosts), repo-diversity reranking, best-chunk
+ * lookup for a page and snippet highlighting. Inputs of each phase are
+ * computed once in setup; queries rotate through natural-language and
+ * identifier forms of the corpus's method names. The searcher's caches sit
+ * above these phases and are never consulted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int QUERIES = 64;
+    private static final int PAGE = 10;
+    private static final long BUDGET_MS = 60_000;
+
+    @Param("10000")
+    public int docs;
+
+    private Path dir;
+    private LuceneWriter writer;
+    private LuceneSearcher searcher;
+    private ShardSearchers shards;
+
+    private String[] queries;
+    private Query[] built;
+    private QueryIntent[] intents;
+    private ScoreDoc[][] hits;
+    private List<List<Candidate>> pages;
+    private int[][] chunkDocs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        List<IndexDocument> corpus = new SyntheticCorpus(42).generate(docs);
+        dir = Files.createTempDirectory("dcse-jmh-");
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            BatchingEmbedder embedder = new BatchingEmbedder(new HashingEmbeddingProvider(256), "", 64, 0, 4, 1, 1);
+            writer = new LuceneWriter(new SearchAnalyzer(), new DefaultRankSignalExtractor(),
+                    new CodeChunker(60, 10, true), embedder, false, 60_000, "none", false,
+                    dir.toString(), 1, "id", 500, 1000, false);
+            for (IndexDocument doc : corpus) {
+                writer.updateDocument(doc);
+            }
+            writer.commit();
+        } finally {
+            System.setOut(out);
+        }
+        searcher = new LuceneSearcher(new SearchAnalyzer(), writer, 50, 0, 0,
+                100_000, 8, BUDGET_MS, BUDGET_MS, 100, 200, 3, BUDGET_MS, 60);
+        shards = searcher.acquireShards();
+
+        List<SyntheticCorpus.MethodQuery> methods = SyntheticCorpus.methodQueries(7);
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            SyntheticCorpus.MethodQuery m = methods.get(i / 2);
+            queries[i] = i % 2 == 0 ? m.text() : m.method();
+        }
+
+        built = new Query[QUERIES];
+        intents = new QueryIntent[QUERIES];
+        hits = new ScoreDoc[QUERIES][];
+        pages = new ArrayList<>();
+        chunkDocs = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            built[i] = searcher.buildQuery(queries[i]);
+            intents[i] = QueryIntent.detect(queries[i]);
+            hits[i] = searcher.lexicalCandidates(shards, built[i], intents[i], LuceneSearcher.CANDIDATE_POOL,
+                    deadline()).scoreDocs;
+            List<Candidate> ranked = searcher.rerankCandidates(shards.searcher, hits[i]);
+            pages.add(ranked.subList(0, Math.min(PAGE, ranked.size())));
+            chunkDocs[i] = searcher.bestChunks(shards, built[i], pages.get(i), deadline());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        shards.close();
+        searcher.shutdown();
+        writer.close();
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(java.util.Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private int next() {
+        next = (next + 1) % QUERIES;
+        return next;
+    }
+
+    private static Deadline deadline() {
+        return Deadline.in(BUDGET_MS);
+    }
+
+    @Benchmark
+    public Query buildQuery() throws Exception {
+        return searcher.buildQuery(queries[next()]);
+    }
+
+    @Benchmark
+    public TopDocs collectCandidates() throws Exception {
+        int i = next();
+        return searcher.lexicalCandidates(shards, built[i], intents[i], LuceneSearcher.CANDIDATE_POOL, deadline());
+    }
+
+    @Benchmark
+    public List<Candidate> rerank() throws Exception {
+        return searcher.rerankCandidates(shards.searcher, hits[next()]);
+    }
+
+    @Benchmark
+    public int[] bestChunks() throws Exception {
+        int i = next();
+        return searcher.bestChunks(shards, built[i], pages.get(i), deadline());
+    }
+
+    @Benchmark
+    public List<SearchResult> highlight() throws Exception {
+        int i = next();
+        List<SearchResult> page = new ArrayList<>(PAGE);
+        for (Candidate c : pages.get(i)) {
+            page.add(new SearchResult(c.path(), c.score(), null, c.repo(), null, null, null));
+        }
+        searcher.highlightPage(shards, built[i], chunkDocs[i], page, deadline());
+        return page;
+    }
+}
@@ -1,2 +1,23 @@
 #!/bin/bash
-echo test
\ No newline at end of file
+# Open-loop load test of /api/search (indexer/src/test/.../bench/SearchLoadGenerator).
+# Without --url it starts an indexer in-process over a synthetic index, no Redis needed.
+#   benchmarks/load_test.sh --qps 200 --duration 30
+#   benchmarks/load_test.sh --url http://localhost:8081 --log queries.jsonl
+set -euo pipefail
+
+args=()
+while [ $# -gt 0 ]; do
+    if [ "$1" = "--log" ] && [ $# -gt 1 ]; then
+        # resolved before the cd below
+        args+=("--log" "$(realpath "$2")")
+        shift 2
+    else
+        args+=("$1")
+        shift
+    fi
+done
+
+cd "$(dirname "$0")/../indexer"
+exec ./mvnw -q test-compile exec:java -Dexec.classpathScope=test \
+    -Dexec.mainClass=com.example.indexer.bench.SearchLoadGenerator \
+    -Dexec.args="${args[*]:-}"
@@ -6,6 +6,8 @@ from git import Repo
 from pathlib import Path
 
 STREAM = "dcse_stream"
+# Whole files go to the indexer, which chunks them; this only guards the stream against huge blobs
+MAX_FILE_CHARS = 1_000_000
 
 r = redis.Redis(host="127.0.0.1", port=6379, decode_responses=True)
 
@@ -28,7 +30,7 @@ def walk_and_emit(repo_path, repo_name):
             "id": str(path.resolve()),
             "path": str(path.resolve()),
             "repo": repo_name,
-            "code": text[:5000],
+            "code": text[:MAX_FILE_CHARS],
             "lang": path.suffix,
             "hash": compute_hash(text)
         }
@@ -1,6 +1,9 @@
 package com.example.indexer.api;
 
+import com.example.indexer.lucene.LuceneSearcher;
 import com.example.indexer.lucene.LuceneWriter;
+import com.example.indexer.semantic.BatchingEmbedder;
+import org.jspecify.annotations.Nullable;
 import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,10 +17,15 @@ public class HealthController {
 
     private final StringRedisTemplate redisTemplate;
     private final LuceneWriter luceneWriter;
+    private final LuceneSearcher luceneSearcher;
+    private final BatchingEmbedder embedder;
 
-    public HealthController(StringRedisTemplate redisTemplate, LuceneWriter luceneWriter) {
+    public HealthController(StringRedisTemplate redisTemplate, LuceneWriter luceneWriter, LuceneSearcher luceneSearcher,
+                            @Nullable BatchingEmbedder embedder) {
         this.redisTemplate = redisTemplate;
         this.luceneWriter = luceneWriter;
+        this.luceneSearcher = luceneSearcher;
+        this.embedder = embedder;
     }
 
     @GetMapping("/api/health")
@@ -31,6 +39,9 @@ public class HealthController {
         out.put("pendingTotal", pms == null ? 0 : pms.getTotalPendingMessages());
 
         out.put("indexedDocs", luceneWriter.getNumDocs());
+        out.put("indexing", luceneWriter.getStats().snapshot());
+        out.put("searchCache", luceneSearcher.getResultCache().snapshot());
+        out.put("embeddings", embedder == null ? Map.of("enabled", false) : embedder.snapshot());
         return out;
     }
 }
@@ -6,10 +6,28 @@ import lombok.Getter;
 @Getter
 @AllArgsConstructor
 public class RankSignals {
+
+    // Bit layout of the "signals" numeric doc value
+    public static final long CONTROLLER = 1;
+    public static final long MAPPING = 1 << 1;
+    public static final long TEST = 1 << 2;
+    public static final long CONFIG = 1 << 3;
+    public static final long ENTRY_POINT = 1 << 4;
+
     boolean isController;
     boolean hasMapping;
     boolean isTest;
     boolean isConfig;
+    boolean isEntryPoint;
     int repoFrequency;
-}
 
+    public long toMask() {
+        long mask = 0;
+        if (isController) mask |= CONTROLLER;
+        if (hasMapping) mask |= MAPPING;
+        if (isTest) mask |= TEST;
+        if (isConfig) mask |= CONFIG;
+        if (isEntryPoint) mask |= ENTRY_POINT;
+        return mask;
+    }
+}
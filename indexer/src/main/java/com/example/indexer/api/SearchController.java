@@ -1,11 +1,19 @@
 package com.example.indexer.api;
 
 import com.example.indexer.lucene.LuceneSearcher;
-import org.apache.lucene.search.ScoreDoc;
+import com.example.indexer.lucene.SearchCursor;
+import com.example.indexer.lucene.SearchMode;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.regex.PatternSyntaxException;
 
 @RestController
 @RequestMapping("/api")
@@ -20,18 +28,52 @@ public class SearchController {
     @GetMapping("/search")
     public SearchResponse search(@RequestParam String q,
                                  @RequestParam(defaultValue = "20") int n,
-                                 @RequestParam(required = false) Integer lastDoc,
-                                 @RequestParam(required = false) Float lastScore) throws Exception {
+                                 @RequestParam(required = false) String cursor,
+                                 @RequestParam(required = false) Long budgetMs,
+                                 @RequestHeader(value = "X-Search-Budget-Ms", required = false) Long budgetHeader,
+                                 @RequestParam(defaultValue = "lexical") String mode,
+                                 @RequestParam(required = false) Integer k,
+                                 @RequestParam(required = false) Integer numCandidates) throws Exception {
 //        return searcher.search(q, n);
 
-        ScoreDoc searchAfter = null;
+        if (n <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "n must be positive");
+        }
+        SearchMode searchMode = SearchMode.parse(mode);
+        if (!searcher.supports(searchMode)) {
+            throw new SearchMode.UnsupportedModeException(
+                    "mode=" + mode + " needs indexer.embeddings.enabled=true on the indexer");
+        }
+        // query param wins over the header; neither means the configured default
+        Long budget = budgetMs != null ? budgetMs : budgetHeader;
+        SearchPage page = searcher.search(q, n, cursor, budget, searchMode, k, numCandidates);
+        return SearchResponse.from(page);
+    }
 
-        if (lastDoc != null && lastScore != null) {
-            searchAfter = new ScoreDoc(lastDoc, lastScore);
+    @GetMapping("/search/regex")
+    public SearchResponse regex(@RequestParam String q,
+                                @RequestParam(defaultValue = "20") int n,
+                                @RequestParam(required = false) Long budgetMs,
+                                @RequestHeader(value = "X-Search-Budget-Ms", required = false) Long budgetHeader) throws Exception {
+        if (n <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "n must be positive");
         }
+        Long budget = budgetMs != null ? budgetMs : budgetHeader;
+        try {
+            return SearchResponse.from(searcher.regexSearch(q, n, budget));
+        } catch (PatternSyntaxException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid regex: " + e.getDescription(), e);
+        }
+    }
 
-        SearchPage page = searcher.search(q, n, searchAfter);
-        return SearchResponse.from(page);
+    @ExceptionHandler(SearchCursor.InvalidCursorException.class)
+    public ProblemDetail invalidCursor(SearchCursor.InvalidCursorException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    @ExceptionHandler(SearchMode.UnsupportedModeException.class)
+    public ProblemDetail unsupportedMode(SearchMode.UnsupportedModeException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
     }
 
     @GetMapping("/search/explain")
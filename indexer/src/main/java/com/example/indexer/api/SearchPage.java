@@ -1,24 +1,26 @@
 package com.example.indexer.api;
 
-import org.apache.lucene.search.ScoreDoc;
 import java.util.List;
 
 public class SearchPage {
 
     public List<SearchResult> results;
-    public ScoreDoc lastScoreDoc;
+    public String nextCursor;
     public long totalHits;
     public int pageSize;
+    public boolean partial;
 
     public SearchPage(
             List<SearchResult> results,
-            ScoreDoc lastScoreDoc,
+            String nextCursor,
             long totalHits,
-            int pageSize
+            int pageSize,
+            boolean partial
     ) {
         this.results = results;
-        this.lastScoreDoc = lastScoreDoc;
+        this.nextCursor = nextCursor;
         this.totalHits = totalHits;
         this.pageSize = pageSize;
+        this.partial = partial;
     }
 }
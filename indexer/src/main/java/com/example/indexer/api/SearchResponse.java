@@ -8,24 +8,22 @@ public class SearchResponse {
 
     public List<SearchResult> results;
 
-    // Cursor for next page
-    public Integer lastDoc;
-    public Float lastScore;
+    // Opaque cursor for the next page; null on the last page
+    public String cursor;
 
     public long totalHits;
     public int pageSize;
 
+    // The latency budget ran out: results, snippets or totalHits may be incomplete
+    public boolean partial;
+
     public static SearchResponse from(SearchPage page) {
         SearchResponse r = new SearchResponse();
         r.results = page.results;
         r.totalHits = page.totalHits;
         r.pageSize = page.pageSize;
-
-        if (page.lastScoreDoc != null) {
-            r.lastDoc = page.lastScoreDoc.doc;
-            r.lastScore = page.lastScoreDoc.score;
-        }
-
+        r.cursor = page.nextCursor;
+        r.partial = page.partial;
         return r;
     }
 }
@@ -19,6 +19,10 @@ public class SearchResult {
     private String snippet;
     private String repo;
 
+    // 1-based, inclusive line range of the best-matching chunk; null for files indexed before chunking
+    private Integer startLine;
+    private Integer endLine;
+
     @JsonIgnore
     private String hash;
 }
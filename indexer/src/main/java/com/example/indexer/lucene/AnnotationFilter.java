@@ -0,0 +1,54 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+import java.io.IOException;
+
+/**
+ * Marks annotations ({@code @GetMapping}) as keywords so the word delimiter
+ * leaves them whole, and stacks the bare name ({@code GetMapping}) on the
+ * same position so a query without the '@' still finds them.
+ */
+final class AnnotationFilter extends TokenFilter {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final KeywordAttribute keywordAtt = addAttribute(KeywordAttribute.class);
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+    private State annotation;
+
+    AnnotationFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (annotation != null) {
+            restoreState(annotation);
+            annotation = null;
+            termAtt.copyBuffer(termAtt.buffer(), 1, termAtt.length() - 1);
+            offsetAtt.setOffset(offsetAtt.startOffset() + 1, offsetAtt.endOffset());
+            posIncAtt.setPositionIncrement(0);
+            return true;
+        }
+        if (!input.incrementToken()) return false;
+
+        if (termAtt.length() > 1 && termAtt.charAt(0) == '@' && termAtt.charAt(1) != '@') {
+            keywordAtt.setKeyword(true);
+            annotation = captureState();
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        annotation = null;
+    }
+}
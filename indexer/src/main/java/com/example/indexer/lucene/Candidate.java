@@ -0,0 +1,21 @@
+package com.example.indexer.lucene;
+
+import java.util.Comparator;
+
+/**
+ * A reranked hit. Ordered by score, then by stable id so ties page deterministically.
+ */
+record Candidate(int doc, float score, String id, String path, String repo) {
+
+    static final Comparator<Candidate> RANK_ORDER =
+            Comparator.comparing(Candidate::score, Comparator.reverseOrder())
+                    .thenComparing(Candidate::id);
+
+    /**
+     * True if this candidate sorts strictly after the cursor position.
+     */
+    boolean isAfter(SearchCursor cursor) {
+        int cmp = Float.compare(cursor.score(), score);
+        return cmp > 0 || (cmp == 0 && id.compareTo(cursor.id()) > 0);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.indexer.lucene;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Short-lived per-query candidate lists so following pages don't re-run the
+ * query. Entries are tied to a reader version: once the searcher refreshes,
+ * lookups for the old version simply miss and age out.
+ */
+class CandidateCache {
+
+    private record Key(String query, long readerVersion) {}
+
+    private record Entry(RankedCandidates ranked, long expiresAtNanos) {}
+
+    private final long ttlNanos;
+    private final Map<Key, Entry> entries;
+
+    CandidateCache(int maxEntries, long ttlMillis) {
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized RankedCandidates get(String query, long readerVersion) {
+        Key key = new Key(query, readerVersion);
+        Entry e = entries.get(key);
+        if (e == null) return null;
+
+        if (System.nanoTime() > e.expiresAtNanos()) {
+            entries.remove(key);
+            return null;
+        }
+        return e.ranked();
+    }
+
+    synchronized void put(String query, long readerVersion, RankedCandidates ranked) {
+        entries.put(new Key(query, readerVersion), new Entry(ranked, System.nanoTime() + ttlNanos));
+    }
+}
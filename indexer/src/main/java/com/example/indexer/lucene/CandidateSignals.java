@@ -0,0 +1,76 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Post-pass inputs (id, path, repo) for a candidate list, read from doc values with one forward
+ * pass per segment instead of loading every stored document.
+ * Arrays are parallel to the hits passed to {@link #load}.
+ */
+class CandidateSignals {
+
+    private static final Set<String> STORED_FALLBACK_FIELDS = Set.of("id", "path", "repo");
+
+    final String[] ids;
+    final String[] paths;
+    final String[] repos;
+
+    private CandidateSignals(int size) {
+        ids = new String[size];
+        paths = new String[size];
+        repos = new String[size];
+    }
+
+    static CandidateSignals load(IndexSearcher searcher, ScoreDoc[] hits) throws IOException {
+        CandidateSignals out = new CandidateSignals(hits.length);
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+
+        // doc values iterators only move forward → visit hits in doc id order
+        Integer[] order = new Integer[hits.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(hits[a].doc, hits[b].doc));
+
+        int leafIdx = -1;
+        LeafReaderContext leaf = null;
+        SortedDocValues idDv = null, pathDv = null, repoDv = null;
+
+        for (int i : order) {
+            int doc = hits[i].doc;
+
+            if (leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leafIdx = ReaderUtil.subIndex(doc, leaves);
+                leaf = leaves.get(leafIdx);
+                LeafReader reader = leaf.reader();
+                idDv = DocValues.getSorted(reader, "id");
+                pathDv = DocValues.getSorted(reader, "path");
+                repoDv = DocValues.getSorted(reader, "repo");
+            }
+
+            int segDoc = doc - leaf.docBase;
+            if (idDv.advanceExact(segDoc) && pathDv.advanceExact(segDoc) && repoDv.advanceExact(segDoc)) {
+                out.ids[i] = idDv.lookupOrd(idDv.ordValue()).utf8ToString();
+                out.paths[i] = pathDv.lookupOrd(pathDv.ordValue()).utf8ToString();
+                out.repos[i] = repoDv.lookupOrd(repoDv.ordValue()).utf8ToString();
+            } else {
+                // written before path/repo moved to doc values
+                Document d = searcher.storedFields().document(doc, STORED_FALLBACK_FIELDS);
+                out.ids[i] = d.get("id");
+                out.paths[i] = d.get("path");
+                out.repos[i] = d.get("repo");
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.indexer.lucene;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a source file into line ranges, the unit that is matched, scored
+ * and highlighted. Windows of max-lines overlap by overlap-lines so a match
+ * near a cut is still whole in one chunk. With split-on-declarations a
+ * window ends early, before the last declaration in its second half (plus
+ * the annotations and comments above it), and the next chunk starts right
+ * there without overlap.
+ */
+@Component
+public class CodeChunker {
+
+    /** 1-based, inclusive line range of the file, and its text */
+    public record Chunk(int startLine, int endLine, String text) {}
+
+    // a visibility modifier, or a declaration keyword after optional modifiers
+    private static final Pattern DECLARATION = Pattern.compile(
+            "\\s*(?:(?:public|protected|private|internal)\\b"
+                    + "|(?:(?:static|final|abstract|sealed|export|async|override|default)\\s+)*"
+                    + "(?:class|interface|enum|record|def|fun|func|function)\\b)");
+    // annotations, decorators and comments belong to the declaration below them
+    private static final Pattern PREAMBLE = Pattern.compile("\\s*(?:@|//|/\\*|\\*|#)");
+
+    private final int maxLines;
+    private final int overlapLines;
+    private final boolean splitOnDeclarations;
+
+    public CodeChunker(@Value("${indexer.chunks.max-lines:60}") int maxLines,
+                       @Value("${indexer.chunks.overlap-lines:10}") int overlapLines,
+                       @Value("${indexer.chunks.split-on-declarations:true}") boolean splitOnDeclarations) {
+        this.maxLines = Math.max(1, maxLines);
+        this.overlapLines = Math.max(0, Math.min(overlapLines, this.maxLines - 1));
+        this.splitOnDeclarations = splitOnDeclarations;
+    }
+
+    /**
+     * @return at least one chunk; an empty file is one empty chunk at line 1
+     */
+    public List<Chunk> split(String code) {
+        String text = code == null ? "" : code;
+
+        // offset of each line start, plus the end of the text
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = text.indexOf('\n'); i >= 0 && i + 1 < text.length(); i = text.indexOf('\n', i + 1)) {
+            starts.add(i + 1);
+        }
+        int lines = starts.size();
+        starts.add(text.length());
+
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int end = Math.min(start + maxLines, lines);
+            int cut = end < lines && splitOnDeclarations ? declarationCut(text, starts, start, end) : -1;
+            if (cut > 0) end = cut;
+
+            chunks.add(new Chunk(start + 1, end, text.substring(starts.get(start), starts.get(end))));
+            if (end >= lines) return chunks;
+
+            start = cut > 0 ? end : Math.max(end - overlapLines, start + 1);
+        }
+    }
+
+    /**
+     * The line to end [start, end) before: the last declaration in the
+     * window's second half or right after it, moved up over its annotations
+     * and comments. -1 when there is none.
+     */
+    private int declarationCut(String text, List<Integer> starts, int start, int end) {
+        int floor = start + Math.max(1, (end - start) / 2);
+        for (int line = end; line > floor; line--) {
+            if (!DECLARATION.matcher(line(text, starts, line)).lookingAt()) continue;
+
+            int cut = line;
+            while (cut - 1 > floor && PREAMBLE.matcher(line(text, starts, cut - 1)).lookingAt()) {
+                cut--;
+            }
+            return cut;
+        }
+        return -1;
+    }
+
+    private static String line(String text, List<Integer> starts, int line) {
+        return text.substring(starts.get(line), starts.get(line + 1));
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.analysis.util.CharTokenizer;
+
+/**
+ * Splits source text into identifiers: runs of letters, digits, '_' and '$'.
+ * '@' is kept too, so an annotation such as {@code @GetMapping} arrives as
+ * one token for {@link AnnotationFilter}. Everything else (operators,
+ * punctuation, '.', whitespace) separates tokens.
+ */
+final class CodeTokenizer extends CharTokenizer {
+
+    @Override
+    protected boolean isTokenChar(int c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '@';
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.indexer.lucene;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-shot migration of an existing lucene-index into the current schema
+ * (see LuceneWriter.migrate), deduplicating ids on the way. Exits when done;
+ * start the indexer normally afterwards:
+ *
+ *   ./mvnw spring-boot:run -Dspring-boot.run.arguments=--indexer.compact=true
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(
+        name = "indexer.compact",
+        havingValue = "true")
+public class CompactCommand implements CommandLineRunner {
+
+    private final LuceneWriter luceneWriter;
+    private final ConfigurableApplicationContext context;
+
+    public CompactCommand(LuceneWriter luceneWriter, ConfigurableApplicationContext context) {
+        this.luceneWriter = luceneWriter;
+        this.context = context;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        log.info("Migrating lucene-index into the current schema...");
+        int files = luceneWriter.migrate();
+        log.info("Migration done — {} files rewritten", files);
+
+        // the searchers still point at the replaced shards
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
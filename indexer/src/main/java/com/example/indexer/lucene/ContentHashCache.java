@@ -0,0 +1,93 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory id → content-hash map used to skip unchanged files without
+ * touching the index. Warmed once from the index at startup and updated on
+ * every write.
+ *
+ * Hex SHA-256 hashes (what the crawler emits) are kept as their 32 raw bytes
+ * rather than a 64-char String, which roughly quarters the per-entry cost.
+ */
+public class ContentHashCache {
+
+    private final ConcurrentHashMap<String, byte[]> hashes = new ConcurrentHashMap<>();
+
+    /**
+     * Reads id/hash from the doc values of chunked file documents. Files
+     * indexed before chunking are left out, so they count as changed and
+     * are re-indexed as chunked blocks when next crawled.
+     */
+    public void warm(DirectoryReader reader) throws IOException {
+        for (LeafReaderContext ctx : reader.leaves()) {
+            LeafReader leaf = ctx.reader();
+            PostingsEnum files = leaf.postings(LuceneWriter.FILE, PostingsEnum.NONE);
+            if (files == null) continue;
+
+            Bits liveDocs = leaf.getLiveDocs();
+            SortedDocValues ids = DocValues.getSorted(leaf, "id");
+            SortedDocValues hashDv = DocValues.getSorted(leaf, "hash");
+
+            for (int doc = files.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = files.nextDoc()) {
+                if (liveDocs != null && !liveDocs.get(doc)) continue;
+
+                if (ids.advanceExact(doc) && hashDv.advanceExact(doc)) {
+                    hashes.put(
+                            ids.lookupOrd(ids.ordValue()).utf8ToString(),
+                            encode(hashDv.lookupOrd(hashDv.ordValue()).utf8ToString()));
+                }
+            }
+        }
+    }
+
+    public boolean isUnchanged(String id, String hash) {
+        if (id == null || hash == null) return false;
+        byte[] existing = hashes.get(id);
+        return existing != null && Arrays.equals(existing, encode(hash));
+    }
+
+    public void put(String id, String hash) {
+        if (id == null || hash == null) return;
+        hashes.put(id, encode(hash));
+    }
+
+    public void remove(String id) {
+        hashes.remove(id);
+    }
+
+    public int size() {
+        return hashes.size();
+    }
+
+    static byte[] encode(String hash) {
+        int len = hash.length();
+        if (len == 0 || (len & 1) != 0) {
+            return hash.getBytes(StandardCharsets.UTF_8);
+        }
+
+        byte[] out = new byte[len / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(hash.charAt(2 * i), 16);
+            int lo = Character.digit(hash.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                // not hex — keep it verbatim
+                return hash.getBytes(StandardCharsets.UTF_8);
+            }
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
+    }
+}
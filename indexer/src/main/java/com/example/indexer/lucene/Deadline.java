@@ -0,0 +1,39 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.index.QueryTimeout;
+
+/**
+ * End-to-end latency budget of one search request. Passed to Lucene as the
+ * QueryTimeout for rewrite and collection, and checked between the later
+ * phases. Any phase that cuts its work short marks the result partial.
+ */
+final class Deadline implements QueryTimeout {
+
+    private final long deadlineNanos;
+    private volatile boolean partial;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    static Deadline in(long budgetMs) {
+        return new Deadline(System.nanoTime() + budgetMs * 1_000_000);
+    }
+
+    boolean expired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    @Override
+    public boolean shouldExit() {
+        return expired();
+    }
+
+    void markPartial() {
+        partial = true;
+    }
+
+    boolean partial() {
+        return partial;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.indexer.lucene;
+
+/**
+ * Text handed to a regex Matcher that aborts the match once the request
+ * deadline passes. A single find() can backtrack for far longer than the
+ * budget; java.util.regex has no timeout of its own, but reads every
+ * character through charAt, so the clock is checked there (every
+ * {@value #CHECK_EVERY} reads, to keep nanoTime off the hot path).
+ */
+final class DeadlineCharSequence implements CharSequence {
+
+    private static final int CHECK_EVERY = 1024;
+
+    /** Thrown out of Matcher.find() when the deadline passes; carries no stack trace. */
+    static final class Expired extends RuntimeException {
+        Expired() {
+            super("regex match exceeded the search deadline", null, false, false);
+        }
+    }
+
+    private final String text;
+    private final Deadline deadline;
+    private int reads;
+
+    DeadlineCharSequence(String text, Deadline deadline) {
+        this.text = text;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++reads % CHECK_EVERY == 0 && deadline.expired()) {
+            throw new Expired();
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
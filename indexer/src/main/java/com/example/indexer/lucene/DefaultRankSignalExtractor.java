@@ -0,0 +1,67 @@
+package com.example.indexer.lucene;
+
+import com.example.indexer.api.RankSignals;
+import com.example.indexer.model.IndexDocument;
+import org.springframework.stereotype.Component;
+
+/**
+ * Path conventions + Spring annotations. The code is scanned once, only at
+ * '@' positions, instead of one String.contains pass per annotation.
+ */
+@Component
+public class DefaultRankSignalExtractor implements RankSignalExtractor {
+
+    private static final String[] CONTROLLER_ANNOTATIONS = {
+            "RestController",
+            "Controller"
+    };
+
+    private static final String[] MAPPING_ANNOTATIONS = {
+            "RequestMapping",
+            "GetMapping",
+            "PostMapping",
+            "PutMapping",
+            "DeleteMapping"
+    };
+
+    @Override
+    public RankSignals extract(IndexDocument doc) {
+        String path = doc.getPath() == null ? "" : doc.getPath();
+        String code = doc.getCode() == null ? "" : doc.getCode();
+
+        boolean isController = false;
+        boolean hasMapping = false;
+
+        for (int at = code.indexOf('@'); at >= 0; at = code.indexOf('@', at + 1)) {
+            if (!isController && startsWithAny(code, at + 1, CONTROLLER_ANNOTATIONS)) {
+                isController = true;
+            } else if (!hasMapping && startsWithAny(code, at + 1, MAPPING_ANNOTATIONS)) {
+                hasMapping = true;
+            }
+            if (isController && hasMapping) break;
+        }
+
+        boolean isTest = path.contains("/test/") || path.endsWith("Test.java") || path.endsWith("Tests.java");
+
+        boolean isConfig = path.endsWith(".yml") ||
+                path.endsWith(".yaml") ||
+                path.endsWith(".properties") ||
+                path.endsWith(".sql") ||
+                path.contains("/k8s/");
+
+        boolean isEntryPoint = path.endsWith("README.md") ||
+                path.endsWith("pom.xml") ||
+                path.endsWith("build.gradle");
+
+        return new RankSignals(isController, hasMapping, isTest, isConfig, isEntryPoint, 0);
+    }
+
+    private static boolean startsWithAny(String text, int offset, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (text.startsWith(prefix, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
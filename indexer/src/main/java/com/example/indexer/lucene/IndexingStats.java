@@ -0,0 +1,71 @@
+package com.example.indexer.lucene;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ingestion throughput counters, used to tune commit batch size / latency.
+ * Rates are averaged since the writer was opened.
+ */
+public class IndexingStats {
+
+    private final long startedAtNanos = System.nanoTime();
+
+    private final LongAdder docsIndexed = new LongAdder();
+    private final LongAdder docsSkipped = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+
+    void recordIndexed() {
+        docsIndexed.increment();
+    }
+
+    void recordSkipped() {
+        docsSkipped.increment();
+    }
+
+    void recordCommit(long tookNanos) {
+        commits.increment();
+        commitNanos.add(tookNanos);
+    }
+
+    public double docsPerSecond() {
+        return perSecond(docsIndexed.sum());
+    }
+
+    public double commitsPerSecond() {
+        return perSecond(commits.sum());
+    }
+
+    private double perSecond(long count) {
+        double elapsedSec = (System.nanoTime() - startedAtNanos) / 1_000_000_000.0;
+        return elapsedSec <= 0 ? 0 : count / elapsedSec;
+    }
+
+    /** cumulative counts at one instant; the difference of two is an interval */
+    public record Totals(long atNanos, long indexed, long skipped, long commits, long commitNanos) {
+
+        public Totals minus(Totals earlier) {
+            return new Totals(atNanos - earlier.atNanos, indexed - earlier.indexed, skipped - earlier.skipped,
+                    commits - earlier.commits, commitNanos - earlier.commitNanos);
+        }
+    }
+
+    public Totals totals() {
+        return new Totals(System.nanoTime(), docsIndexed.sum(), docsSkipped.sum(), commits.sum(), commitNanos.sum());
+    }
+
+    public Map<String, Object> snapshot() {
+        long commitCount = commits.sum();
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("docsIndexed", docsIndexed.sum());
+        out.put("docsSkipped", docsSkipped.sum());
+        out.put("commits", commitCount);
+        out.put("docsPerSec", Math.round(docsPerSecond() * 100) / 100.0);
+        out.put("commitsPerSec", Math.round(commitsPerSecond() * 100) / 100.0);
+        out.put("avgCommitMs", commitCount == 0 ? 0 : commitNanos.sum() / commitCount / 1_000_000);
+        return out;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.indexer.lucene;
+
+/** Timed stages of indexing one stream message, per document unless noted. */
+public enum IngestStage {
+    /** message JSON to IndexDocument (RedisConsumer) */
+    DESERIALIZE,
+    /** content hash against the last indexed version */
+    HASH_CHECK,
+    /** waiting for the document's vector from the embedding pipeline */
+    EMBED,
+    /** chunking and building the block's Lucene documents */
+    BUILD,
+    /** IndexWriter.updateDocuments: analysis, inversion and the old block's delete */
+    INDEX,
+    /** one group commit (per batch) */
+    COMMIT,
+    /** one XACK of a committed batch (RedisConsumer) */
+    ACK
+}
@@ -0,0 +1,68 @@
+package com.example.indexer.lucene;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One INFO line per interval with what the writer did in it, in place of a
+ * line per document (those are DEBUG). Quiet intervals log nothing.
+ */
+@Slf4j
+@Component
+public class IngestSummaryLogger {
+
+    private final IndexingStats stats;
+    private final ScheduledExecutorService scheduler;
+    private IndexingStats.Totals last;
+
+    public IngestSummaryLogger(LuceneWriter luceneWriter,
+                               @Value("${indexer.log.summary-interval-ms:10000}") long intervalMs) {
+        this.stats = luceneWriter.getStats();
+        this.last = stats.totals();
+
+        if (intervalMs <= 0) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ingest-summary");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::logSummary, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void logSummary() {
+        IndexingStats.Totals now = stats.totals();
+        IndexingStats.Totals interval = now.minus(last);
+        last = now;
+        if (interval.indexed() == 0 && interval.skipped() == 0 && interval.commits() == 0) {
+            return;
+        }
+
+        double seconds = interval.atNanos() / 1_000_000_000.0;
+        log.info("Ingest last {}s: indexed={} skipped={} commits={} docsPerSec={} avgCommitMs={} totalIndexed={}",
+                Math.round(seconds),
+                interval.indexed(),
+                interval.skipped(),
+                interval.commits(),
+                Math.round(interval.indexed() / seconds),
+                interval.commits() == 0 ? 0 : interval.commitNanos() / interval.commits() / 1_000_000,
+                now.indexed());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        // the tail of the last interval
+        logSummary();
+    }
+}
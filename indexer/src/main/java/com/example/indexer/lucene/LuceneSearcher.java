@@ -1,52 +1,139 @@
 package com.example.indexer.lucene;
 
-import com.example.indexer.api.RankSignals;
 import com.example.indexer.api.SearchPage;
 import com.example.indexer.api.SearchResult;
+import com.example.indexer.semantic.EmbeddingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.StoredFields;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
-import org.apache.lucene.search.highlight.*;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.Counter;
+import org.apache.lucene.search.join.BitSetProducer;
+import org.apache.lucene.search.join.ParentChildrenBlockJoinQuery;
+import org.apache.lucene.search.join.QueryBitSetProducer;
+import org.apache.lucene.search.join.ScoreMode;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
+import org.apache.lucene.search.uhighlight.CustomSeparatorBreakIterator;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.LengthGoalBreakIterator;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 @Slf4j
 @Component
-public class LuceneSearcher {
-
-    private IndexSearcher searcher;
-    private DirectoryReader reader;
+public class LuceneSearcher implements MeterBinder {
+
+    // Reference-counted NRT searchers opened from the writer, one per shard: acquire/release per request
+    private final List<SearcherManager> searcherManagers;
+    // Intra-query concurrency: slices of one query are collected in parallel (null = request thread only)
+    private final ExecutorService searchPool;
+    private final ShardSearchers.SliceLimits sliceLimits;
+    private final ScheduledExecutorService refresher;
     private final MultiFieldQueryParser parser;
     private final Analyzer analyzer;
-    private final Path indexPath = Paths.get("lucene-index");
-
-    private enum QueryIntent {
-        REPO,
-        ENDPOINT,
-        CODE
-    }
 
-    public LuceneSearcher(SearchAnalyzer analyzerBuilder) throws IOException {
+    private static final int SNIPPET_LENGTH = 200;
+
+    // Queries match chunks and rank files: each file is the last doc of its block (see LuceneWriter.buildBlock)
+    private static final BitSetProducer FILES = new QueryBitSetProducer(new TermQuery(LuceneWriter.FILE));
+    private static final Query CHUNKS = new TermQuery(LuceneWriter.CHUNK);
+    private static final Set<String> CHUNK_LINES = Set.of("start_line", "end_line");
+    private static final Set<String> CODE_LINES = Set.of("code", "start_line");
+
+    static final int CANDIDATE_POOL = 200;
+    private static final int MAX_CANDIDATE_POOL = 3200;
+
+    // End-to-end search budget when the caller sets none, and the most a caller may ask for
+    private final long defaultBudgetMs;
+    private final long maxBudgetMs;
+
+    // Semantic mode: query embeddings from the writer's provider (null = disabled)
+    private final EmbeddingProvider embeddings;
+    private final int defaultK;
+    private final int defaultNumCandidates;
+    private static final int MAX_K = 1000;
+    // Quantized vectors: k * oversample hits from the graph are rescored at full precision
+    private final boolean rescoreVectors;
+    private final int rescoreOversample;
+    private static final int MAX_NUM_CANDIDATES = 10_000;
+
+    // Hybrid mode: the vector branch runs here while the lexical one stays on the request thread
+    private final ExecutorService hybridPool;
+    private final long hybridBudgetMs;
+    private final int rrfK;
+
+    // Finished pages of hot queries, for the current reader version only
+    private final SearchResultCache resultCache;
+
+    // Reranked candidates of recent queries, for cursor paging
+    private final CandidateCache candidateCache = new CandidateCache(256, 60_000);
+
+    private final PhaseTimers<SearchPhase> phaseTimers = new PhaseTimers<>(
+            "indexer.search.phase", "phase", "Time per search phase", SearchPhase.class);
+
+    public LuceneSearcher(SearchAnalyzer analyzerBuilder,
+                          LuceneWriter luceneWriter,
+                          @Value("${indexer.searcher.max-staleness-ms:50}") long maxStalenessMs,
+                          @Value("${indexer.search.result-cache.max-entries:10000}") long resultCacheSize,
+                          @Value("${indexer.search.threads:0}") int searchThreads,
+                          @Value("${indexer.search.slice.max-docs:100000}") int sliceMaxDocs,
+                          @Value("${indexer.search.slice.max-segments:8}") int sliceMaxSegments,
+                          @Value("${indexer.search.budget-ms:200}") long defaultBudgetMs,
+                          @Value("${indexer.search.max-budget-ms:2000}") long maxBudgetMs,
+                          @Value("${indexer.search.knn.k:100}") int defaultK,
+                          @Value("${indexer.search.knn.num-candidates:200}") int defaultNumCandidates,
+                          @Value("${indexer.search.knn.rescore-oversample:3}") int rescoreOversample,
+                          @Value("${indexer.search.hybrid.budget-ms:300}") long hybridBudgetMs,
+                          @Value("${indexer.search.hybrid.rrf-k:60}") int rrfK) throws IOException {
         this.analyzer = analyzerBuilder.build();
+        this.defaultBudgetMs = defaultBudgetMs;
+        this.maxBudgetMs = maxBudgetMs;
+        this.embeddings = luceneWriter.getEmbeddings();
+        this.defaultK = defaultK;
+        this.defaultNumCandidates = defaultNumCandidates;
+        this.rescoreVectors = luceneWriter.getQuantization() != VectorQuantization.NONE;
+        this.rescoreOversample = Math.max(1, rescoreOversample);
+        this.hybridBudgetMs = hybridBudgetMs;
+        this.rrfK = Math.max(1, rrfK);
 
         Map<String, Float> boosts = new HashMap<>();
         boosts.put("path", 2.0f);
@@ -61,105 +148,147 @@ public class LuceneSearcher {
         );
         parser.setDefaultOperator(QueryParser.Operator.AND);
 
-        // initialize reader + searcher
-        initReader();
-
-        // start auto-refresh background thread
-        startAutoRefresher();
-    }
-
-    private QueryIntent detectIntent(String q) {
-        String lq = q.toLowerCase();
+        // NRT from the writer in this JVM: sees added docs before they are committed
+        this.searcherManagers = luceneWriter.newSearcherManagers();
+        this.resultCache = new SearchResultCache(resultCacheSize);
+        ReferenceManager.RefreshListener invalidateOnRefresh = new ReferenceManager.RefreshListener() {
+            @Override
+            public void beforeRefresh() {
+            }
 
-        if (lq.contains("/") ||
-                lq.contains("@get") ||
-                lq.contains("@post") ||
-                lq.contains("controller") ||
-                lq.contains("mapping")) {
-            return QueryIntent.ENDPOINT;
+            @Override
+            public void afterRefresh(boolean didRefresh) {
+                if (didRefresh) {
+                    resultCache.invalidateAll();
+                }
+            }
+        };
+        for (SearcherManager manager : searcherManagers) {
+            manager.addListener(invalidateOnRefresh);
         }
-
-        if (lq.matches("[a-z0-9\\-]+") && lq.length() < 20) {
-            return QueryIntent.REPO;
+        luceneWriter.addCommitListener(this::refresh);
+
+        int threads = searchThreads > 0 ? searchThreads : Runtime.getRuntime().availableProcessors();
+        if (threads > 1) {
+            AtomicInteger threadNum = new AtomicInteger();
+            this.searchPool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "lucene-search-" + threadNum.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.searchPool = null;
         }
+        this.sliceLimits = new ShardSearchers.SliceLimits(sliceMaxDocs, sliceMaxSegments);
+
+        // not the search pool: a branch blocked on its own slices must not hold a slice thread
+        AtomicInteger hybridNum = new AtomicInteger();
+        this.hybridPool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "lucene-hybrid-" + hybridNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
 
-        return QueryIntent.CODE;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lucene-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+        long staleness = Math.max(1, maxStalenessMs);
+        refresher.scheduleWithFixedDelay(this::refresh, staleness, staleness, TimeUnit.MILLISECONDS);
     }
 
-    private void initReader() throws IOException {
-        if (!Files.exists(indexPath)) {
-            Files.createDirectories(indexPath);
-        }
-
-        if (!DirectoryReader.indexExists(FSDirectory.open(indexPath))) {
-            System.out.println("⚠️ No index found yet. Waiting for writer to create segments...");
-            return;
-        }
-
-        this.reader = DirectoryReader.open(FSDirectory.open(indexPath));
-        this.searcher = new IndexSearcher(reader);
-        System.out.println("✅ LuceneSearcher initialized with index.");
+    /**
+     * One point-in-time view of every shard; release with close(). This and
+     * the per-phase methods (buildQuery, lexicalCandidates, rerankCandidates,
+     * bestChunks, highlightPage) are package-private for benchmarks/jmh.
+     */
+    ShardSearchers acquireShards() throws IOException {
+        return ShardSearchers.acquire(searcherManagers, searchPool, sliceLimits);
     }
 
-    private void startAutoRefresher() {
-        Thread refresher = new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(2000);
-
-                    FSDirectory dir = FSDirectory.open(indexPath);
-
-                    // CASE 1: reader not initialized yet
-                    if (reader == null) {
-                        if (DirectoryReader.indexExists(dir)) {
-                            System.out.println("🔄 Index created — initializing reader...");
-                            initReader();
-                        }
-                        continue;
-                    }
-
-                    // CASE 2: reader exists → look for updated segments
-                    DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
-                    if (newReader != null) {
-                        reader.close();
-                        reader = newReader;
-                        searcher = new IndexSearcher(reader);
-                        System.out.println("🔄 Lucene index refreshed.");
-                    }
-
-                } catch (Exception e) {
-                    System.out.println("Index refresh error: " + e.getMessage());
-                }
+    /**
+     * Cheap when nothing changed; runs on the staleness schedule and after
+     * every writer commit.
+     */
+    private void refresh() {
+        for (SearcherManager manager : searcherManagers) {
+            try {
+                manager.maybeRefresh();
+            } catch (Exception e) {
+                log.warn("Index refresh error: {}", e.getMessage());
             }
-        });
-
-        refresher.setDaemon(true);
-        refresher.start();
+        }
     }
 
-
     @PreDestroy
     public void shutdown() throws IOException {
-        System.out.println("🔻 Closing Lucene reader...");
-        if(reader != null) reader.close();
+        log.info("Closing Lucene searcher managers...");
+        refresher.shutdownNow();
+        if (searchPool != null) {
+            searchPool.shutdownNow();
+        }
+        hybridPool.shutdownNow();
+        IOUtils.close(searcherManagers);
     }
 
-    private String highlight(String field, String text, Query query) {
+    /**
+     * Snippets for the final page only, from each file's best chunk. Passages
+     * come from the chunk's stored code and the offsets indexed in its
+     * postings, so nothing is re-analyzed and no source file is read on the
+     * query path.
+     *
+     * Out of budget, the remaining snippets are left empty and the page is
+     * marked partial.
+     */
+    void highlightPage(ShardSearchers shards, Query query, int[] chunkDocs,
+                               List<SearchResult> page, Deadline deadline) throws IOException {
+        if (page.isEmpty()) return;
+        if (deadline.expired()) {
+            deadline.markPartial();
+            return;
+        }
+
+        IndexSearcher searcher = shards.searcher;
+        int[] docIds = chunkDocs.clone();
+
+        String[] fragments = null;
         try {
-            QueryScorer scorer = new QueryScorer(query, field);
-            Fragmenter fragmenter = new SimpleSpanFragmenter(scorer, 200);
+            // reads postings through exitable readers: past the deadline it gives up
+            UnifiedHighlighter highlighter = UnifiedHighlighter.builder(shards.bounded(deadline), analyzer)
+                    .withFormatter(new DefaultPassageFormatter("<b>", "</b>", "... ", false))
+                    .withBreakIterator(() -> LengthGoalBreakIterator.createClosestToLength(
+                            new CustomSeparatorBreakIterator('\n'), SNIPPET_LENGTH, 0.5f))
+                    .build();
+
+            fragments = highlighter
+                    .highlightFields(new String[]{"code"}, query, docIds, new int[]{1})
+                    .get("code");
+        } catch (Exception e) {
+            log.debug("Highlighting failed, using fallback snippets: {}", e.getMessage());
+        }
 
-            SimpleHTMLFormatter formatter = new SimpleHTMLFormatter("<b>", "</b>");
-            Highlighter highlighter = new Highlighter(formatter, scorer);
-            highlighter.setTextFragmenter(fragmenter);
+        for (int i = 0; i < page.size(); i++) {
+            String fragment = fragments == null ? null : fragments[i];
 
-            TokenStream ts = analyzer.tokenStream(field, text);
-            String fragment = highlighter.getBestFragment(ts, text);
+            if (fragment == null && deadline.expired()) {
+                deadline.markPartial();
+                continue;
+            }
 
             // 1️⃣ If Lucene found a good fragment, use it
             if (fragment != null && !fragment.contains("Copyright")) {
-                return fragment;
+                page.get(i).setSnippet(fragment);
+            } else {
+                page.get(i).setSnippet(fallbackSnippet(searcher, docIds[i]));
             }
+        }
+    }
+
+    private String fallbackSnippet(IndexSearcher searcher, int doc) {
+        try {
+            String text = searcher.storedFields().document(doc, Set.of("code")).get("code");
+            if (text == null) return null;
 
             // 2️⃣ Prefer annotation lines
             String annotationSnippet = extractImportantLines(text,
@@ -232,11 +361,11 @@ public class LuceneSearcher {
 
 
 
-    private Query buildQuery(String q) throws Exception {
+    Query buildQuery(String q) throws Exception {
 
         BooleanQuery.Builder builder = new BooleanQuery.Builder();
 
-        QueryIntent intent = detectIntent(q);
+        QueryIntent intent = QueryIntent.detect(q);
 
         if (intent == QueryIntent.ENDPOINT) {
             builder.add(new TermQuery(new Term("is_controller", "true")),
@@ -284,7 +413,7 @@ public class LuceneSearcher {
         builder.add(new BoostQuery(phrase, 3.0f), BooleanClause.Occur.SHOULD);
 
         Query symbolQuery = new BoostQuery(
-                new QueryParser("symbols", analyzer).parse(q),
+                new QueryParser(SearchAnalyzer.SYMBOLS, analyzer).parse(q),
                 4.0f
         );
         builder.add(symbolQuery, BooleanClause.Occur.SHOULD);
@@ -292,269 +421,498 @@ public class LuceneSearcher {
         return builder.build();
     }
 
-//    public SearchPage search(String queryText, int topN, ScoreDoc searchAfter) throws Exception {
-//
-//        if (searcher == null) {
-//            throw new IllegalStateException("Lucene index not ready");
-//        }
-//
-//        Query query = buildQuery(queryText);
-//        QueryIntent intent = detectIntent(queryText);
-//
-//        TopScoreDocCollector topCollector =
-//                TopScoreDocCollector.create(topN, searchAfter, topN);
-//
-//        Counter counter = Counter.newCounter();
-//        TimeLimitingCollector timeLimiter =
-//                new TimeLimitingCollector(topCollector, counter, 200);
-//
-//        try {
-//            searcher.search(query, timeLimiter);
-//        } catch (TimeLimitingCollector.TimeExceededException e) {
-//            throw new RuntimeException("Search timeout exceeded");
-//        }
-//
-//        TopDocs docs = topCollector.topDocs();
-//
-//        Map<String, Integer> repoCounts = new HashMap<>();
-//        List<SearchResult> results = new ArrayList<>();
-//
-//        for (ScoreDoc sd : docs.scoreDocs) {
-//            Document doc = searcher.doc(sd.doc);
-//
-//            String repo = doc.get("repo");
-//            String path = doc.get("path");
-//
-//            float adjustedScore = sd.score;
-//
-//            String isController = doc.get("is_controller");
-//            String hasMapping = doc.get("has_mapping");
-//
-//            if (intent == QueryIntent.ENDPOINT) {
-//                if ("true".equals(isController) && "true".equals(hasMapping)) {
-//                    adjustedScore *= 4.0f; // strong boost
-//                }
-//            }
-//
-//            if (intent == QueryIntent.REPO) {
-//                // Penalize controllers for repo searches
-//                if ("true".equals(isController)) {
-//                    adjustedScore *= 0.3f;
-//                }
-//
-//                // Boost repo entry points
-//                if (path.endsWith("README.md") ||
-//                        path.endsWith("pom.xml") ||
-//                        path.endsWith("build.gradle") ||
-//                        path.contains("PetClinicApplication")) {
-//                    adjustedScore *= 4.0f;
-//                }
-//
-//                if (path.contains("/test/") ||
-//                        path.contains("/db/") ||
-//                        path.contains("/k8s/") ||
-//                        path.endsWith(".sql")) {
-//                    adjustedScore *= 0.2f;
-//                }
-//            }
-//
-//            // 🔥 DEMOTE TEST FILES
-//            if (path.contains("/test/") || path.contains("Tests")) {
-//                adjustedScore *= 0.3f;
-//            }
-//
-//            int seenCount = repoCounts.getOrDefault(repo, 0);
-//            if (seenCount > 0) {
-//                adjustedScore *= Math.pow(0.85, seenCount); // 🔥 soft demotion
-//            }
-//
-//            repoCounts.put(repo, seenCount + 1);
-//
-//            String code = safeReadFile(path);
-//            String snippet = null;
-//
-//            if (code != null) {
-//                snippet = highlight("code", code, query);
-//            }
-//
-//            results.add(new SearchResult(
-//                    path,
-//                    adjustedScore,
-//                    snippet,
-//                    repo,
-//                    doc.get("hash")
-//                    ));
-//        }
-//
-//        ScoreDoc nextCursor =
-//                docs.scoreDocs.length == 0 ? null : docs.scoreDocs[docs.scoreDocs.length - 1];
-//
-//        return new SearchPage(
-//                results,
-//                nextCursor,
-//                docs.totalHits.value,
-//                10
-//        );
-//    }
-
-    public SearchPage search(String queryText, int pageSize, ScoreDoc searchAfter) throws Exception {
-
-        if (searcher == null) {
-            throw new IllegalStateException("Lucene index not ready");
+    public SearchPage search(String queryText, int pageSize, String cursor) throws Exception {
+        return search(queryText, pageSize, cursor, null, SearchMode.LEXICAL, null, null);
+    }
+
+    public SearchPage search(String queryText, int pageSize, String cursor, long budgetMs) throws Exception {
+        return search(queryText, pageSize, cursor, budgetMs, SearchMode.LEXICAL, null, null);
+    }
+
+    /**
+     * Null arguments fall back to the configured defaults.
+     *
+     * @param budgetMs      end-to-end latency budget; when it runs out the best
+     *                      result so far is returned with {@code partial} set.
+     *                      Hybrid mode has its own default, as it does both searches
+     * @param k             semantic mode: nearest neighbours to rank
+     * @param numCandidates semantic mode: HNSW candidates explored per segment
+     */
+    public SearchPage search(String queryText, int pageSize, String cursor, Long budgetMs,
+                             SearchMode mode, Integer k, Integer numCandidates) throws Exception {
+        long budget = budgetMs != null ? budgetMs
+                : mode == SearchMode.HYBRID ? hybridBudgetMs
+                : defaultBudgetMs;
+        Deadline deadline = Deadline.in(Math.max(1, Math.min(budget, maxBudgetMs)));
+
+        int kk = Math.max(1, Math.min(k == null ? defaultK : k, MAX_K));
+        int candidates = Math.max(kk, Math.min(numCandidates == null ? defaultNumCandidates : numCandidates, MAX_NUM_CANDIDATES));
+        Retrieval retrieval = new Retrieval(mode, kk, candidates);
+
+        if (!supports(mode)) {
+            throw new SearchMode.UnsupportedModeException(
+                    mode.name().toLowerCase() + " search needs indexer.embeddings.enabled=true");
         }
+        // a malformed token fails here, before it can reach either cache
+        SearchCursor after = cursor == null ? null : SearchCursor.decode(cursor);
 
-        QueryIntent intent = detectIntent(queryText);
-        Query query = buildQuery(queryText);
+        try (ShardSearchers shards = acquireShards()) {
+            long readerVersion = shards.version;
+            String normalized = retrieval.cacheKey(normalize(queryText));
 
-        // =========================
-        // PHASE 1 — CANDIDATE FETCH
-        // =========================
-        int CANDIDATE_POOL = 200;
+            SearchPage cached = resultCache.get(normalized, pageSize, cursor, readerVersion);
+            if (cached != null) {
+                return cached;
+            }
 
-        TopScoreDocCollector collector =
-                TopScoreDocCollector.create(CANDIDATE_POOL, searchAfter, CANDIDATE_POOL);
+            SearchPage page = search(shards, queryText, pageSize, after, retrieval, deadline);
+            if (!page.partial) {
+                resultCache.put(normalized, pageSize, cursor, readerVersion, page);
+            }
+            return page;
+        }
+    }
 
-        Counter counter = Counter.newCounter();
-        TimeLimitingCollector timeLimiter =
-                new TimeLimitingCollector(collector, counter, 200);
+    /** false for the vector modes when the index is built without embeddings */
+    public boolean supports(SearchMode mode) {
+        return !mode.needsEmbeddings() || embeddings != null;
+    }
 
-        try {
-            searcher.search(query, timeLimiter);
-        } catch (TimeLimitingCollector.TimeExceededException e) {
-            log.warn("Search timeout — returning partial results");
+    /**
+     * grep over the index: files with a chunk containing a match of
+     * {@code regex} (java.util.regex, multiline), in index order. Chunks are
+     * preselected by the trigrams every match must contain and then verified
+     * against their stored code, so a selective pattern reads only a few
+     * chunks and an unselective one degrades to a scan.
+     *
+     * Each result's line range and snippet are those of the first match in
+     * the file. Returns at most {@code pageSize} files and no cursor; out of
+     * budget, the files verified so far with {@code partial} set.
+     */
+    public SearchPage regexSearch(String regex, int pageSize, Long budgetMs) throws IOException {
+        Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
+        Deadline deadline = Deadline.in(Math.max(1, Math.min(budgetMs != null ? budgetMs : defaultBudgetMs, maxBudgetMs)));
+        Query prefilter = onlyChunks(RegexTrigrams.prefilter(regex, SearchAnalyzer.TRIGRAMS));
+
+        try (ShardSearchers shards = acquireShards()) {
+            IndexSearcher searcher = shards.searcher;
+            Weight weight = searcher.createWeight(searcher.rewrite(prefilter),
+                    org.apache.lucene.search.ScoreMode.COMPLETE_NO_SCORES, 1f);
+
+            List<SearchResult> page = new ArrayList<>();
+            Set<BytesRef> seen = new HashSet<>();
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                Scorer scorer = weight.scorer(leaf);
+                if (scorer == null) continue;
+
+                Bits live = leaf.reader().getLiveDocs();
+                StoredFields stored = leaf.reader().storedFields();
+                SortedDocValues ids = DocValues.getSorted(leaf.reader(), "id");
+                SortedDocValues paths = DocValues.getSorted(leaf.reader(), "path");
+                SortedDocValues repos = DocValues.getSorted(leaf.reader(), "repo");
+
+                DocIdSetIterator it = scorer.iterator();
+                for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+                    if (live != null && !live.get(doc)) continue;
+                    if (deadline.expired()) {
+                        deadline.markPartial();
+                        return new SearchPage(page, null, page.size(), pageSize, true);
+                    }
+                    // overlapping chunks: a file is reported once, at its first match
+                    if (!ids.advanceExact(doc) || seen.contains(ids.lookupOrd(ids.ordValue()))) continue;
+
+                    Document chunk = stored.document(doc, CODE_LINES);
+                    String code = chunk.get("code");
+                    if (code == null) continue;
+                    Matcher m = pattern.matcher(new DeadlineCharSequence(code, deadline));
+                    try {
+                        if (!m.find()) continue;
+                    } catch (DeadlineCharSequence.Expired e) {
+                        // a pathological pattern ran out the budget inside one chunk
+                        deadline.markPartial();
+                        return new SearchPage(page, null, page.size(), pageSize, true);
+                    }
+
+                    seen.add(BytesRef.deepCopyOf(ids.lookupOrd(ids.ordValue())));
+                    page.add(regexResult(code, m, intOrNull(chunk.getField("start_line")),
+                            paths.advanceExact(doc) ? paths.lookupOrd(paths.ordValue()).utf8ToString() : null,
+                            repos.advanceExact(doc) ? repos.lookupOrd(repos.ordValue()).utf8ToString() : null));
+                    if (page.size() >= pageSize) {
+                        return new SearchPage(page, null, page.size(), pageSize, false);
+                    }
+                }
+            }
+            return new SearchPage(page, null, page.size(), pageSize, false);
         }
+    }
 
-        TopDocs candidates = collector.topDocs();
+    /** the lines of the match with the match in bold, and their line range */
+    private static SearchResult regexResult(String code, Matcher m, Integer chunkStart, String path, String repo) {
+        int lineStart = code.lastIndexOf('\n', m.start() - 1) + 1;
+        int lineEnd = code.indexOf('\n', Math.max(m.start(), m.end() - 1));
+        if (lineEnd < 0) lineEnd = code.length();
+
+        int first = (chunkStart == null ? 1 : chunkStart) + countLines(code, 0, m.start());
+        int last = first + countLines(code, m.start(), Math.max(m.start(), m.end() - 1));
+        String snippet = code.substring(lineStart, m.start())
+                + "<b>" + m.group() + "</b>"
+                + code.substring(m.end(), Math.max(m.end(), lineEnd));
+        return new SearchResult(path, 1f, snippet, repo, first, last, null);
+    }
 
-        // =========================
-        // PHASE 2 — RE-RANKING
-        // =========================
-        Map<String, Integer> repoSeenCount = new HashMap<>();
-        List<SearchResult> reranked = new ArrayList<>();
+    private static int countLines(String text, int from, int to) {
+        int n = 0;
+        for (int i = text.indexOf('\n', from); i >= 0 && i < to; i = text.indexOf('\n', i + 1)) {
+            n++;
+        }
+        return n;
+    }
 
-        for (ScoreDoc sd : candidates.scoreDocs) {
+    private SearchPage search(ShardSearchers shards, String queryText, int pageSize, SearchCursor after,
+                              Retrieval retrieval, Deadline deadline) throws Exception {
+
+        IndexSearcher searcher = shards.searcher;
+        long readerVersion = shards.version;
+        String cacheKey = retrieval.cacheKey(normalize(queryText));
+        long t = System.nanoTime();
+        Query query = retrieval.mode() == SearchMode.SEMANTIC
+                ? highlightQuery(queryText)
+                : buildQuery(queryText);
+        phaseTimers.record(SearchPhase.QUERY, t);
+
+        // Later pages reuse the first page's candidates while the reader is unchanged.
+        // After a refresh the query is re-run and paging resumes at the same (score, id).
+        RankedCandidates ranked = candidateCache.get(cacheKey, readerVersion);
+        if (ranked == null) {
+            ranked = collectAndRerank(shards, queryText, query, CANDIDATE_POOL, retrieval, deadline);
+            cacheIfComplete(cacheKey, readerVersion, ranked, deadline);
+        }
 
-            Document doc = searcher.doc(sd.doc);
-            String path = doc.get("path");
-            String repo = doc.get("repo");
+        int start = ranked.indexAfter(after);
 
-            float score = sd.score;
+        // Page reaches past the settled prefix: widen the pool rather than guess
+        while (start + pageSize > ranked.settled()
+                && ranked.truncated()
+                && ranked.poolSize() < MAX_CANDIDATE_POOL) {
+            if (deadline.expired()) {
+                // serve the unsettled order rather than blow the budget
+                deadline.markPartial();
+                break;
+            }
+            ranked = collectAndRerank(shards, queryText, query,
+                    Math.min(MAX_CANDIDATE_POOL, ranked.poolSize() * 2), retrieval, deadline);
+            cacheIfComplete(cacheKey, readerVersion, ranked, deadline);
+            start = ranked.indexAfter(after);
+        }
 
-            boolean isController = "true".equals(doc.get("is_controller"));
-            boolean hasMapping = "true".equals(doc.get("has_mapping"));
-            boolean isTest = path.contains("/test/") || path.endsWith("Test.java") || path.endsWith("Tests.java");
+        List<Candidate> pageCandidates = ranked.candidates().subList(
+                Math.min(start, ranked.candidates().size()),
+                Math.min(start + pageSize, ranked.candidates().size()));
+
+        // Stored fields are only touched for the page being returned
+        t = System.nanoTime();
+        int[] chunkDocs = bestChunks(shards, query, pageCandidates, deadline);
+        t = phaseTimers.record(SearchPhase.BEST_CHUNKS, t);
+        List<SearchResult> page = new ArrayList<>(pageCandidates.size());
+        for (int i = 0; i < pageCandidates.size(); i++) {
+            Candidate c = pageCandidates.get(i);
+            String hash = searcher.storedFields().document(c.doc(), Set.of("hash")).get("hash");
+            Document lines = searcher.storedFields().document(chunkDocs[i], CHUNK_LINES);
+            page.add(new SearchResult(c.path(), c.score(), null, c.repo(),
+                    intOrNull(lines.getField("start_line")), intOrNull(lines.getField("end_line")), hash));
+        }
+        t = phaseTimers.record(SearchPhase.FETCH, t);
 
-            boolean isConfig = path.endsWith(".yml") ||
-                            path.endsWith(".yaml") ||
-                            path.endsWith(".properties") ||
-                            path.endsWith(".sql") ||
-                            path.contains("/k8s/");
+        // =========================
+        // PHASE 3 — SNIPPETS (page only)
+        // =========================
+        highlightPage(shards, query, chunkDocs, page, deadline);
+        phaseTimers.record(SearchPhase.HIGHLIGHT, t);
+
+        // a cut-short collection may have missed hits: let the caller page on
+        boolean hasMore = start + pageSize < ranked.candidates().size()
+                || ranked.truncated()
+                || deadline.partial();
+
+        String nextCursor = null;
+        if (hasMore && !pageCandidates.isEmpty()) {
+            Candidate last = pageCandidates.get(pageCandidates.size() - 1);
+            nextCursor = new SearchCursor(last.score(), last.id()).encode();
+        }
 
-            int repoFreq = repoSeenCount.getOrDefault(repo, 0);
+        return new SearchPage(
+                page,
+                nextCursor,
+                ranked.totalHits(),
+                pageSize,
+                deadline.partial()
+        );
+    }
 
-            RankSignals signals = new RankSignals(
-                    isController,
-                    hasMapping,
-                    isTest,
-                    isConfig,
-                    repoFreq
-            );
+    /**
+     * Each page file's best-scoring chunk for the query, found among that
+     * file's children only; the first chunk when none matches (semantic hits)
+     * or the budget is spent. A file indexed before chunking is its own chunk.
+     */
+    int[] bestChunks(ShardSearchers shards, Query query, List<Candidate> candidates,
+                             Deadline deadline) throws IOException {
+        IndexSearcher searcher = shards.searcher;
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        Query chunkQuery = onlyChunks(query);
+
+        int[] chunks = new int[candidates.size()];
+        for (int i = 0; i < chunks.length; i++) {
+            int file = candidates.get(i).doc();
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(file, leaves));
+            BitSet files = FILES.getBitSet(leaf);
+            int local = file - leaf.docBase;
+            if (files == null || !files.get(local)) {
+                chunks[i] = file;
+                continue;
+            }
 
-            float finalScore = rerank(score, signals, intent, path);
+            int best = -1;
+            if (deadline.expired()) {
+                deadline.markPartial();
+            } else {
+                ScoreDoc[] top = searcher.search(new ParentChildrenBlockJoinQuery(FILES, chunkQuery, file), 1).scoreDocs;
+                if (top.length > 0) best = top[0].doc;
+            }
+            // children sit between the previous file and this one
+            chunks[i] = best >= 0 ? best : leaf.docBase + (local == 0 ? 0 : files.prevSetBit(local - 1) + 1);
+        }
+        return chunks;
+    }
 
-            repoSeenCount.put(repo, repoFreq + 1);
+    private static Integer intOrNull(IndexableField field) {
+        return field == null ? null : field.numericValue().intValue();
+    }
+
+    /** the chunk-level query, scoring each file by its best chunk */
+    private static Query toFiles(Query query) {
+        return new ToParentBlockJoinQuery(onlyChunks(query), FILES, ScoreMode.Max);
+    }
+
+    /** block joins need a child query that can only match children */
+    private static Query onlyChunks(Query query) {
+        return new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(CHUNKS, BooleanClause.Occur.FILTER)
+                .build();
+    }
 
-            String snippet = safeSnippet(path, query);
+    /** candidates from a cut-short collection must not be reused by later pages */
+    private void cacheIfComplete(String cacheKey, long readerVersion, RankedCandidates ranked, Deadline deadline) {
+        if (!deadline.partial()) {
+            candidateCache.put(cacheKey, readerVersion, ranked);
+        }
+    }
 
-            reranked.add(new SearchResult(
-                    path,
-                    finalScore,
-                    snippet,
-                    repo,
-                    doc.get("hash")
-            ));
+    /**
+     * Text-only query for highlighting semantic results; natural-language
+     * input that doesn't parse simply gets fallback snippets.
+     */
+    private Query highlightQuery(String queryText) {
+        try {
+            return parser.parse(QueryParser.escape(queryText));
+        } catch (Exception e) {
+            return new MatchNoDocsQuery();
         }
+    }
+
+    private RankedCandidates collectAndRerank(ShardSearchers shards, String queryText, Query query, int poolSize,
+                                              Retrieval retrieval, Deadline deadline) throws Exception {
+
+        QueryIntent intent = QueryIntent.detect(queryText);
+        long t = System.nanoTime();
 
         // =========================
-        // FINAL SORT + PAGINATION
+        // PHASE 1 — CANDIDATE FETCH
         // =========================
-        reranked.sort((a, b) -> Float.compare(b.getScore(), a.getScore()));
+        // all shards and slices concurrently, one shared top-K
+        ScoreDoc[] hits;
+        long totalHits;
+        boolean truncated;
+        float settledAbove;
+
+        switch (retrieval.mode()) {
+            case SEMANTIC -> {
+                // kNN returns its k best and nothing beyond: there is no pool to widen
+                hits = vectorCandidates(shards, queryText, intent, retrieval, deadline).scoreDocs;
+                totalHits = hits.length;
+                truncated = false;
+                settledAbove = 0;
+            }
+            case HYBRID -> {
+                // both branches share the deadline; ranks are fused before reranking
+                CompletableFuture<TopDocs> vector = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return vectorCandidates(shards, queryText, intent, retrieval, deadline);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, hybridPool);
+                TopDocs lexical = lexicalCandidates(shards, query, intent, poolSize, deadline);
+                TopDocs knn;
+                try {
+                    knn = vector.join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                    throw e;
+                }
 
-        List<SearchResult> page =
-                reranked.stream()
-                        .limit(pageSize)
-                        .toList();
+                hits = ReciprocalRankFusion.fuse(rrfK, lexical.scoreDocs, knn.scoreDocs);
+                totalHits = Math.max(lexical.totalHits.value, hits.length);
+                truncated = lexical.totalHits.value > lexical.scoreDocs.length;
+                // an uncollected lexical hit could still be first in the kNN list
+                settledAbove = ReciprocalRankFusion.ceilingBeyond(rrfK, lexical.scoreDocs.length, 2);
+            }
+            default -> {
+                TopDocs lexical = lexicalCandidates(shards, query, intent, poolSize, deadline);
+                hits = lexical.scoreDocs;
+                totalHits = lexical.totalHits.value;
+                truncated = totalHits > hits.length;
+                settledAbove = hits.length == 0 ? 0 : hits[hits.length - 1].score;
+            }
+        }
 
-        ScoreDoc nextCursor =
-                candidates.scoreDocs.length == 0
-                        ? null
-                        : candidates.scoreDocs[Math.min(pageSize - 1, candidates.scoreDocs.length - 1)];
+        t = phaseTimers.record(SearchPhase.COLLECT, t);
 
-        return new SearchPage(
-                page,
-                nextCursor,
-                candidates.totalHits.value,
-                pageSize
+        // =========================
+        // PHASE 2 — RE-RANKING
+        // =========================
+        List<Candidate> reranked = rerankCandidates(shards.searcher, hits);
+        phaseTimers.record(SearchPhase.RERANK, t);
+
+        return RankedCandidates.of(
+                reranked,
+                totalHits,
+                retrieval.mode() == SearchMode.SEMANTIC ? retrieval.k() : poolSize,
+                truncated,
+                settledAbove
         );
     }
 
-    private float rerank(float baseScore, RankSignals s, QueryIntent intent, String path) {
-        float score = baseScore;
+    /**
+     * Repo diversity over the collected hits, in rank order. Equal scores are
+     * visited by stable id, not doc id, so which of two tied files from one
+     * repo takes the penalty doesn't depend on the index layout (shards, merges).
+     */
+    List<Candidate> rerankCandidates(IndexSearcher searcher, ScoreDoc[] hits) throws IOException {
+        CandidateSignals docSignals = CandidateSignals.load(searcher, hits);
 
-        // =====================
-        // INTENT-AWARE LOGIC
-        // =====================
-        if (intent == QueryIntent.ENDPOINT) {
-            if (s.isController() && s.isHasMapping()) score *= 4.0f;
-            if (!s.isController()) score *= 0.2f;
-        }
+        Integer[] order = new Integer[hits.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> -hits[i].score)
+                .thenComparing(i -> docSignals.ids[i], Comparator.nullsLast(Comparator.naturalOrder())));
+
+        Map<String, Integer> repoSeenCount = new HashMap<>();
+        List<Candidate> reranked = new ArrayList<>(hits.length);
 
-        if (intent == QueryIntent.CODE) {
-            if (s.isTest()) score *= 0.3f;
-            if (s.isConfig()) score *= 0.4f;
+        for (int i : order) {
+            ScoreDoc sd = hits[i];
+
+            String path = docSignals.paths[i];
+            String repo = docSignals.repos[i];
+
+            int repoFreq = repoSeenCount.getOrDefault(repo, 0);
+
+            float finalScore = rerank(sd.score, repoFreq);
+
+            repoSeenCount.put(repo, repoFreq + 1);
+
+            reranked.add(new Candidate(sd.doc, finalScore, docSignals.ids[i], path, repo));
         }
 
-        if (intent == QueryIntent.REPO) {
-            if (s.isController()) score *= 0.3f;
+        reranked.sort(Candidate.RANK_ORDER);
+        return reranked;
+    }
 
-            if (path.endsWith("README.md") || path.endsWith("pom.xml") || path.endsWith("build.gradle")) {
-                score *= 5.0f;
-            }
+    /** BM25 with global stats over chunks, best chunk per file, intent-boosted */
+    TopDocs lexicalCandidates(ShardSearchers shards, Query query, QueryIntent intent, int poolSize,
+                                      Deadline deadline) throws IOException {
+        Query boosted = FunctionScoreQuery.boostByValue(toFiles(query), new SignalBoostValuesSource(intent));
+        return shards.searchTop(boosted, poolSize, deadline);
+    }
+
+    /**
+     * The graph search runs during rewrite, per segment, on the search pool;
+     * numCandidates bounds the beam and the best k survive. Over quantized
+     * vectors the graph returns k * oversample hits, which are rescored
+     * against their float vectors before the best k are kept.
+     */
+    private TopDocs vectorCandidates(ShardSearchers shards, String queryText, QueryIntent intent,
+                                     Retrieval retrieval, Deadline deadline) throws IOException {
+        float[] queryVector = embeddings.embed(queryText);
+        int fetch = rescoreVectors ? Math.min(retrieval.k() * rescoreOversample, MAX_NUM_CANDIDATES) : retrieval.k();
+
+        Query knn = new KnnFloatVectorQuery(
+                LuceneWriter.EMBEDDING_FIELD, queryVector, Math.max(fetch, retrieval.numCandidates()));
+        SignalBoostValuesSource boost = new SignalBoostValuesSource(intent);
+        TopDocs hits = shards.searchTop(FunctionScoreQuery.boostByValue(knn, boost), fetch, deadline);
+        if (!rescoreVectors) {
+            return hits;
+        }
+        if (deadline.expired()) {
+            // quantized order as is: approximate, so partial
+            deadline.markPartial();
+            return new TopDocs(hits.totalHits,
+                    Arrays.copyOf(hits.scoreDocs, Math.min(retrieval.k(), hits.scoreDocs.length)));
         }
+        return VectorRescorer.rescore(shards.searcher.getIndexReader(), LuceneWriter.EMBEDDING_FIELD,
+                queryVector, hits, retrieval.k(), boost);
+    }
+
+    private static String normalize(String queryText) {
+        return queryText.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Intent/signal boosts are already in the collected score (see
+     * SignalBoostValuesSource); only order-dependent adjustments remain here.
+     */
+    private float rerank(float baseScore, int repoFrequency) {
+        float score = baseScore;
 
         // =====================
         // REPO DIVERSITY
         // =====================
-        score *= Math.pow(0.85, s.getRepoFrequency());
+        score *= Math.pow(0.85, repoFrequency);
 
         return score;
     }
 
-    private String safeSnippet(String path, Query query) {
-        try {
-            String code = Files.readString(Path.of(path));
-            return highlight("code", code, query);
-        } catch (Exception e) {
-            return null;
-        }
+    public SearchResultCache getResultCache() {
+        return resultCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        phaseTimers.bindTo(registry);
+        resultCache.bindTo(registry);
     }
 
     public String explainByHash(String queryText, String hash) throws Exception {
 
-        Query query = parser.parse(queryText);
+        Query query = toFiles(parser.parse(queryText));
 
-        // Search enough docs to find the target
-        TopDocs docs = searcher.search(query, 1000);
+        try (ShardSearchers shards = acquireShards()) {
+            IndexSearcher searcher = shards.searcher;
 
-        for (ScoreDoc sd : docs.scoreDocs) {
-            Document d = searcher.doc(sd.doc);
+            // Search enough docs to find the target
+            TopDocs docs = searcher.search(query, 1000);
 
-            if (hash.equals(d.get("hash"))) {
-                Explanation explanation = searcher.explain(query, sd.doc);
-                return explanation.toString();
+            StoredFields stored = searcher.storedFields();
+            for (ScoreDoc sd : docs.scoreDocs) {
+                Document d = stored.document(sd.doc, Set.of("hash"));
+
+                if (hash.equals(d.get("hash"))) {
+                    Explanation explanation = searcher.explain(query, sd.doc);
+                    return explanation.toString();
+                }
             }
-        }
 
-        return "No matching document found for hash: " + hash;
+            return "No matching document found for hash: " + hash;
+        }
     }
 }
@@ -1,137 +1,647 @@
 package com.example.indexer.lucene;
 
+import com.example.indexer.api.RankSignals;
 import com.example.indexer.model.IndexDocument;
+import com.example.indexer.semantic.BatchingEmbedder;
+import com.example.indexer.semantic.EmbeddingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.codecs.KnnVectorsFormat;
+import org.apache.lucene.codecs.lucene99.Lucene99Codec;
+import org.apache.lucene.codecs.lucene99.Lucene99HnswScalarQuantizedVectorsFormat;
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.*;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Component
-public class LuceneWriter {
-
-    private static final String INDEX_DIR = "lucene-index";
+public class LuceneWriter implements MeterBinder {
+
+    // One writer per local shard; a single shard uses index-dir directly
+    private final IndexWriter[] shards;
+    private final Path[] shardDirs;
+    private final ShardRouting routing;
+    private final Analyzer analyzer;
+    private final boolean preloadVectors;
+
+    // Group commit: one fsync covers many documents
+    private final int commitBatchSize;
+    private final Duration maxCommitLatency;
+
+    private final IndexingStats stats = new IndexingStats();
+    private final PhaseTimers<IngestStage> ingestTimers = new PhaseTimers<>(
+            "indexer.ingest.stage", "stage", "Time per ingest stage", IngestStage.class);
+    private final ContentHashCache hashCache = new ContentHashCache();
+    private final List<Runnable> commitListeners = new CopyOnWriteArrayList<>();
+    private int uncommittedDocs = 0;
+    private long firstUncommittedAt = 0;
+
+    private final RankSignalExtractor signalExtractor;
+
+    // Block per file: its line-range chunks, then the file parent (see buildBlock)
+    static final String DOC_TYPE = "doc_type";
+    static final Term FILE = new Term(DOC_TYPE, "file");
+    static final Term CHUNK = new Term(DOC_TYPE, "chunk");
+    private final CodeChunker chunker;
+
+    // HNSW vector per document for semantic search; null when embeddings are disabled
+    static final String EMBEDDING_FIELD = "embedding";
+    private static final int MAX_EMBEDDING_CHARS = 8000;
+    private final BatchingEmbedder embedder;
+    private final long embeddingTimeoutMs;
+    private final VectorQuantization quantization;
+
+    private static final Set<String> ID_FIELD = Set.of("id");
+    private static final int MIGRATION_BATCH = 64;
+
+    public LuceneWriter(SearchAnalyzer analyzerBuilder,
+                        RankSignalExtractor signalExtractor,
+                        CodeChunker chunker,
+                        @Nullable BatchingEmbedder embedder,
+                        @Value("${indexer.embeddings.enabled:false}") boolean embeddingsEnabled,
+                        @Value("${indexer.embeddings.timeout-ms:60000}") long embeddingTimeoutMs,
+                        @Value("${indexer.embeddings.quantization:none}") String quantization,
+                        @Value("${indexer.embeddings.preload:false}") boolean preloadVectors,
+                        @Value("${indexer.index-dir:lucene-index}") String indexDir,
+                        @Value("${indexer.shards.count:1}") int shardCount,
+                        @Value("${indexer.shards.routing:id}") String routing,
+                        @Value("${indexer.commit.batch-size:500}") int commitBatchSize,
+                        @Value("${indexer.commit.max-latency-ms:1000}") long maxCommitLatencyMs,
+                        @Value("${indexer.compact:false}") boolean migrating) throws IOException {
+        this.analyzer = analyzerBuilder.buildForIndexing();
+        this.quantization = VectorQuantization.parse(quantization);
+        this.preloadVectors = preloadVectors;
+
+        this.shards = new IndexWriter[Math.max(1, shardCount)];
+        this.shardDirs = new Path[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            shardDirs[i] = shards.length == 1
+                    ? Paths.get(indexDir)
+                    : Paths.get(indexDir, "shard-" + i);
+            shards[i] = openShard(shardDirs[i], IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        }
+        this.routing = ShardRouting.parse(routing);
+        log.info("Opened {} index shard(s) under {} routed by {}, vectors {}",
+                shards.length, indexDir, this.routing, this.quantization);
+
+        // Writing to an old-schema index fails on every document, and every failed
+        // message is redelivered: refuse to start rather than loop on them
+        for (int i = 0; i < shards.length; i++) {
+            try (DirectoryReader reader = DirectoryReader.open(shards[i])) {
+                if (needsMigration(reader) && !migrating) {
+                    IOUtils.closeWhileHandlingException(shards);
+                    throw new IllegalStateException("Index " + shardDirs[i] + " predates the current schema and "
+                            + "cannot be written to: run once with --indexer.compact=true to migrate it, "
+                            + "or delete it and reindex");
+                }
+            }
+        }
 
-    private final IndexWriter writer;
+        this.signalExtractor = signalExtractor;
+        this.chunker = chunker;
+        this.embedder = embeddingsEnabled ? embedder : null;
+        this.embeddingTimeoutMs = embeddingTimeoutMs;
+        this.commitBatchSize = Math.max(1, commitBatchSize);
+        this.maxCommitLatency = Duration.ofMillis(Math.max(1, maxCommitLatencyMs));
 
-    public LuceneWriter(SearchAnalyzer analyzerBuilder) throws IOException {
-        FSDirectory dir = FSDirectory.open(Paths.get(INDEX_DIR));
-        Analyzer analyzer = analyzerBuilder.build();
+        warmHashCache();
+    }
 
+    private IndexWriter openShard(Path dir, IndexWriterConfig.OpenMode mode) throws IOException {
         IndexWriterConfig config = new IndexWriterConfig(analyzer);
-        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        config.setOpenMode(mode);
+        if (quantization == VectorQuantization.INT8) {
+            config.setCodec(quantizedVectorsCodec());
+        }
+
+        // mmap: vectors, graph and postings are read from the page cache, not the heap
+        MMapDirectory directory = new MMapDirectory(dir);
+        if (preloadVectors) {
+            directory.setPreload((name, context) -> isSearchedVectorFile(name, quantization));
+        }
+        return new IndexWriter(directory, config);
+    }
 
-        this.writer = new IndexWriter(dir, config);
+    private void warmHashCache() throws IOException {
+        long start = System.nanoTime();
+        for (IndexWriter shard : shards) {
+            try (DirectoryReader reader = DirectoryReader.open(shard)) {
+                hashCache.warm(reader);
+            }
+        }
+        log.info("Warmed hash cache with {} ids in {} ms",
+                hashCache.size(), (System.nanoTime() - start) / 1_000_000);
     }
 
     /**
      * Idempotent update: replace document with same 'id' term.
+     * Unchanged files are detected against the in-memory hash cache, so no
+     * reader is opened per document.
      */
-    public synchronized void updateDocument(IndexDocument doc) throws IOException {
-
-        String oldHash = getExistingHash(doc.getId());
-
-        if (oldHash != null && oldHash.equals(doc.getHash())) {
-            System.out.println("⏭️ Skipping unchanged file: " + doc.getPath());
+    public void updateDocument(IndexDocument doc) throws IOException {
+
+        long start = System.nanoTime();
+        boolean unchanged = hashCache.isUnchanged(doc.getId(), doc.getHash());
+        ingestTimers.record(IngestStage.HASH_CHECK, start);
+        if (unchanged) {
+            stats.recordSkipped();
+            log.debug("Skipped unchanged {}", doc.getPath());
             return;
         }
 
         addDocument(doc);
+        stats.recordIndexed();
+        log.debug("Indexed {}", doc.getPath());
+    }
 
-        System.out.println("✅ Indexed/Updated Doc: " + doc.getPath());
+    /**
+     * Upsert: atomically deletes every document with the same 'id' term (the
+     * file and all its chunks) and adds the new block, so a changed file
+     * never leaves a stale copy or chunk behind.
+     */
+    public void addDocument(IndexDocument doc) throws IOException {
+        long t = System.nanoTime();
+        float[] vector = embed(doc);
+        t = ingestTimers.record(IngestStage.EMBED, t);
+        List<Document> block = buildBlock(doc, vector);
+        t = ingestTimers.record(IngestStage.BUILD, t);
+        shardFor(doc).updateDocuments(new Term("id", doc.getId()), block);
+        ingestTimers.record(IngestStage.INDEX, t);
+        hashCache.put(doc.getId(), doc.getHash());
+        markUncommitted();
+    }
+
+    private IndexWriter shardFor(IndexDocument doc) {
+        if (shards.length == 1) return shards[0];
+
+        String key = routing == ShardRouting.REPO ? doc.getRepo() : doc.getId();
+        return shards[Math.floorMod(key == null ? 0 : key.hashCode(), shards.length)];
     }
 
+    /**
+     * One block per file, chunks first and the file parent last, as block
+     * joins require. Chunks carry everything the lexical and regex queries
+     * match: the chunk's code, symbols and trigrams plus copies of the file's
+     * path, repo, lang and signal terms, so BM25 length normalisation is per
+     * chunk and no part of a long file is out of reach. The parent carries
+     * the stored fields, content hash, rank signals and embedding.
+     *
+     * Both kinds index id/path/repo/lang alike (Lucene wants one schema per
+     * field); sorted doc values keep each distinct value once per segment,
+     * so the chunks' copies cost an ordinal each. Every document of the
+     * block has the 'id' term, which is what the upsert deletes by.
+     * Package-private for benchmarks/jmh.
+     */
+    List<Document> buildBlock(IndexDocument doc) {
+        return buildBlock(doc, embed(doc));
+    }
 
-    private String getExistingHash(String docId) throws IOException {
+    private List<Document> buildBlock(IndexDocument doc, float[] vector) {
+        // CODE: phrase + highlight (offsets in postings feed the UnifiedHighlighter)
+        FieldType codeType = new FieldType();
+        codeType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        codeType.setStored(true);
+        codeType.setTokenized(true);
+        codeType.freeze();
+
+        // PATH / REPO: keyword-ish, no phrase; stored on the file only
+        FieldType keywordType = new FieldType();
+        keywordType.setIndexOptions(IndexOptions.DOCS);
+        keywordType.setStored(true);
+        keywordType.setTokenized(false);
+        keywordType.freeze();
+
+        FieldType chunkKeywordType = new FieldType(keywordType);
+        chunkKeywordType.setStored(false);
+        chunkKeywordType.freeze();
+
+        // TRIGRAMS: regex prefilter only needs which chunks contain a trigram
+        FieldType trigramType = new FieldType();
+        trigramType.setIndexOptions(IndexOptions.DOCS);
+        trigramType.setTokenized(true);
+        trigramType.setOmitNorms(true);
+        trigramType.freeze();
+
+        RankSignals signals = signalExtractor.extract(doc);
+        String isController = signals.isController() ? "true" : "false";
+        String hasMapping = signals.isHasMapping() ? "true" : "false";
+        BytesRef id = new BytesRef(doc.getId());
+        BytesRef path = new BytesRef(doc.getPath());
+        BytesRef repo = new BytesRef(doc.getRepo());
+
+        List<Document> block = new ArrayList<>();
+        for (CodeChunker.Chunk chunk : chunker.split(doc.getCode())) {
+            Document chunkDoc = new Document();
+            chunkDoc.add(new StringField(DOC_TYPE, CHUNK.text(), Field.Store.NO));
+            chunkDoc.add(new StringField("id", doc.getId(), Field.Store.NO));
+            chunkDoc.add(new SortedDocValuesField("id", id));
+            chunkDoc.add(new Field("path", doc.getPath(), chunkKeywordType));
+            chunkDoc.add(new SortedDocValuesField("path", path));
+            chunkDoc.add(new Field("repo", doc.getRepo(), chunkKeywordType));
+            chunkDoc.add(new SortedDocValuesField("repo", repo));
+            chunkDoc.add(new Field("code", chunk.text(), codeType));
+            chunkDoc.add(new TextField("lang", doc.getLang(), Field.Store.NO));
+            chunkDoc.add(new TextField(SearchAnalyzer.SYMBOLS, chunk.text(), Field.Store.NO));
+            chunkDoc.add(new Field(SearchAnalyzer.TRIGRAMS, chunk.text(), trigramType));
+            chunkDoc.add(new StringField("is_controller", isController, Field.Store.NO));
+            chunkDoc.add(new StringField("has_mapping", hasMapping, Field.Store.NO));
+            chunkDoc.add(new StoredField("start_line", chunk.startLine()));
+            chunkDoc.add(new StoredField("end_line", chunk.endLine()));
+            block.add(chunkDoc);
+        }
+
+        Document file = new Document();
+        file.add(new StringField(DOC_TYPE, FILE.text(), Field.Store.NO));
+        file.add(new StringField("id", doc.getId(), Field.Store.YES));
+        file.add(new SortedDocValuesField("id", id));
+        file.add(new Field("path", doc.getPath(), keywordType));
+        file.add(new SortedDocValuesField("path", path));
+        file.add(new Field("repo", doc.getRepo(), keywordType));
+        file.add(new SortedDocValuesField("repo", repo));
+        file.add(new TextField("lang", doc.getLang(), Field.Store.YES));
+        file.add(new StringField("hash", doc.getHash(), Field.Store.YES));
+        file.add(new SortedDocValuesField("hash", new BytesRef(doc.getHash())));
+        file.add(new StringField("is_controller", isController, Field.Store.YES));
+        file.add(new StringField("has_mapping", hasMapping, Field.Store.YES));
+        // all rank signals as one bitmask, read by SignalBoostValuesSource at query time
+        file.add(new NumericDocValuesField("signals", signals.toMask()));
+
+        if (vector != null) {
+            file.add(new KnnFloatVectorField(EMBEDDING_FIELD, vector, VectorSimilarityFunction.COSINE));
+        }
+        block.add(file);
 
-        try (DirectoryReader reader = DirectoryReader.open(writer)) {
-            IndexSearcher tempSearcher = new IndexSearcher(reader);
+        return block;
+    }
 
-            Query q = new TermQuery(new Term("id", docId));
-            TopDocs hits = tempSearcher.search(q, 1);
+    /**
+     * Queue embeddings for a read batch up front, so they go to the provider
+     * as one coalesced call instead of one per worker. Unchanged files are
+     * skipped here just as in updateDocument.
+     */
+    public void prefetchEmbeddings(List<IndexDocument> docs) {
+        if (embedder == null) return;
 
-            if (hits.totalHits.value == 0) {
-                return null;
+        for (IndexDocument doc : docs) {
+            if (!hashCache.isUnchanged(doc.getId(), doc.getHash())) {
+                embedder.embed(doc.getHash(), embeddingText(doc));
             }
+        }
+    }
 
-            Document existing = tempSearcher.doc(hits.scoreDocs[0].doc);
-            return existing.get("hash");
+    /**
+     * Waits for this document's vector from the pipeline (usually already
+     * prefetched or cached by content hash). A failed embedding only costs
+     * the document its vector; it is still indexed for lexical search.
+     */
+    private float[] embed(IndexDocument doc) {
+        if (embedder == null) return null;
+
+        try {
+            return embedder.embed(doc.getHash(), embeddingText(doc))
+                    .get(embeddingTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            log.warn("Embedding failed for {}, indexing without vector: {}", doc.getPath(), cause.getMessage());
+            return null;
         }
     }
 
+    /**
+     * The head of the file only: the vector is then a function of the
+     * content alone, which is what lets it be cached by content hash.
+     */
+    private static String embeddingText(IndexDocument doc) {
+        String code = doc.getCode() == null ? "" : doc.getCode();
+        return code.length() > MAX_EMBEDDING_CHARS ? code.substring(0, MAX_EMBEDDING_CHARS) : code;
+    }
 
+    EmbeddingProvider getEmbeddings() {
+        return embedder == null ? null : embedder.provider();
+    }
 
-    public void addDocument(IndexDocument doc) throws IOException {
-        Document luceneDoc = new Document();
+    VectorQuantization getQuantization() {
+        return quantization;
+    }
 
-        // CODE: phrase + highlight
-        FieldType codeType = new FieldType();
-        codeType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
-        codeType.setStored(true);
-        codeType.setTokenized(true);
-        codeType.freeze();
+    /**
+     * The format is recorded per segment, so readers need no custom codec
+     * and segments written before a switch stay readable until merged.
+     */
+    private static Lucene99Codec quantizedVectorsCodec() {
+        KnnVectorsFormat quantized = new Lucene99HnswScalarQuantizedVectorsFormat();
+        return new Lucene99Codec() {
+            @Override
+            public KnnVectorsFormat getKnnVectorsFormatForField(String field) {
+                return EMBEDDING_FIELD.equals(field) ? quantized : super.getKnnVectorsFormatForField(field);
+            }
+        };
+    }
+
+    /**
+     * HNSW graph (.vex) plus the vectors a kNN search compares: quantized
+     * (.veq) or float (.vec). Small segments packed into compound files are
+     * not matched and fault in on demand.
+     */
+    private static boolean isSearchedVectorFile(String name, VectorQuantization quantization) {
+        return name.endsWith(".vex")
+                || name.endsWith(quantization == VectorQuantization.INT8 ? ".veq" : ".vec");
+    }
+
+    /**
+     * True when some document is not part of a chunk/file block: a flat
+     * one-document-per-file index from before chunking, whose fields (no doc
+     * values on id/path/repo, no offsets on code) the current schema can't
+     * be added to. Every block document has a doc_type term, and docFreq
+     * still counts deleted ones, so the counts match maxDoc exactly when
+     * there are none.
+     */
+    static boolean needsMigration(DirectoryReader reader) throws IOException {
+        return reader.maxDoc() > reader.docFreq(FILE) + reader.docFreq(CHUNK);
+    }
+
+    /**
+     * Rewrites every shard in the current schema. Each file is read back from
+     * the stored fields (a flat document's code, or a block's chunks put back
+     * together by line), the latest copy per id only, and written as a block
+     * into a fresh directory next to the shard, which then replaces it.
+     * Handles indexes from before upserts, doc values or chunking, and a mix
+     * of flat documents and blocks.
+     *
+     * Searchers opened on the old shards are not carried over: run it with
+     * nothing else searching or writing (CompactCommand exits when done).
+     *
+     * @return number of files written
+     */
+    public synchronized int migrate() throws IOException {
+        commit();
+
+        int total = 0;
+        for (int i = 0; i < shards.length; i++) {
+            Path dir = shardDirs[i];
+            Path fresh = dir.resolveSibling(dir.getFileName() + ".migrating");
+            Path old = dir.resolveSibling(dir.getFileName() + ".old");
+            deleteRecursively(fresh);
+            deleteRecursively(old);
+
+            try (DirectoryReader reader = DirectoryReader.open(shards[i]);
+                 IndexWriter target = openShard(fresh, IndexWriterConfig.OpenMode.CREATE)) {
+                total += migrate(reader, target);
+                target.commit();
+            }
+
+            // the old shard is fully committed: close it, swap the directories, reopen
+            shards[i].close();
+            Files.move(dir, old);
+            Files.move(fresh, dir);
+            deleteRecursively(old);
+            shards[i] = openShard(dir, IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        }
+
+        log.info("Migrated {} files into the current schema", total);
+        return total;
+    }
+
+    private int migrate(DirectoryReader reader, IndexWriter target) throws IOException {
+        // only file-level documents (flat or block parents) store the id; the last live one per id wins
+        Map<String, Integer> latest = new HashMap<>();
+        Bits live = MultiBits.getLiveDocs(reader);
+        StoredFields stored = reader.storedFields();
+        for (int doc = 0; doc < reader.maxDoc(); doc++) {
+            if (live != null && !live.get(doc)) continue;
+            String id = stored.document(doc, ID_FIELD).get("id");
+            if (id != null) {
+                latest.put(id, doc);
+            }
+        }
+
+        int written = 0;
+        List<IndexDocument> batch = new ArrayList<>();
+        for (LeafReaderContext leaf : reader.leaves()) {
+            // a block's chunks come right before its parent, in the same segment
+            List<Document> chunks = new ArrayList<>();
+            for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                int global = leaf.docBase + doc;
+                if (live != null && !live.get(global)) continue;
+
+                Document d = stored.document(global);
+                String id = d.get("id");
+                if (id == null) {
+                    chunks.add(d);
+                    continue;
+                }
+                if (latest.get(id) == global) {
+                    batch.add(toIndexDocument(d, chunks));
+                    if (batch.size() == MIGRATION_BATCH) {
+                        written += writeBlocks(batch, target);
+                    }
+                }
+                chunks.clear();
+            }
+        }
+        return written + writeBlocks(batch, target);
+    }
+
+    private int writeBlocks(List<IndexDocument> batch, IndexWriter target) throws IOException {
+        if (embedder != null) {
+            // queued together so the provider sees one batch, as in prefetchEmbeddings
+            for (IndexDocument doc : batch) {
+                embedder.embed(doc.getHash(), embeddingText(doc));
+            }
+        }
+        for (IndexDocument doc : batch) {
+            target.addDocuments(buildBlock(doc));
+            hashCache.put(doc.getId(), doc.getHash());
+        }
+        int n = batch.size();
+        batch.clear();
+        return n;
+    }
+
+    /** a file as stored: a flat document has its code, a block parent's is spread over its chunks */
+    private static IndexDocument toIndexDocument(Document file, List<Document> chunks) {
+        IndexDocument doc = new IndexDocument();
+        doc.setId(file.get("id"));
+        doc.setRepo(file.get("repo"));
+        doc.setPath(file.get("path"));
+        doc.setLang(file.get("lang"));
+        doc.setHash(file.get("hash"));
+        doc.setCode(file.get("code") != null ? file.get("code") : joinChunks(chunks));
+        return doc;
+    }
+
+    /**
+     * Chunks are exact line ranges of the file, newlines included, and
+     * overlap: each line is taken once, from the first chunk that has it.
+     */
+    static String joinChunks(List<Document> chunks) {
+        TreeMap<Integer, String> lines = new TreeMap<>();
+        for (Document chunk : chunks) {
+            String code = chunk.get("code");
+            IndexableField start = chunk.getField("start_line");
+            if (code == null || start == null) continue;
+
+            int line = start.numericValue().intValue();
+            for (int from = 0; from < code.length(); line++) {
+                int end = code.indexOf('\n', from);
+                end = end < 0 ? code.length() : end + 1;
+                lines.putIfAbsent(line, code.substring(from, end));
+                from = end;
+            }
+        }
+        return String.join("", lines.values());
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (var paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private synchronized void markUncommitted() {
+        if (uncommittedDocs == 0) {
+            firstUncommittedAt = System.nanoTime();
+        }
+        uncommittedDocs++;
+    }
 
-        // PATH: keyword-ish, no phrase
-        FieldType pathType = new FieldType();
-        pathType.setIndexOptions(IndexOptions.DOCS);
-        pathType.setStored(true);
-        pathType.setTokenized(false);
-        pathType.freeze();
+    /**
+     * True once the pending batch reaches the configured size or has been
+     * waiting longer than the max commit latency.
+     */
+    public synchronized boolean isCommitDue() {
+        if (uncommittedDocs == 0) {
+            return false;
+        }
+        return uncommittedDocs >= commitBatchSize
+                || System.nanoTime() - firstUncommittedAt >= maxCommitLatency.toNanos();
+    }
 
-        // REPO: searchable but no phrase
-        FieldType repoType = new FieldType();
-        repoType.setIndexOptions(IndexOptions.DOCS);
-        repoType.setStored(true);
-        repoType.setTokenized(false);
-        repoType.freeze();
+    /**
+     * Durably commit everything added so far. Callers must only ack the
+     * messages covered by this batch after it returns.
+     */
+    public synchronized void commit() throws IOException {
+        if (uncommittedDocs == 0 && !hasUncommittedChanges()) {
+            return;
+        }
 
-        String content = doc.getCode();
+        long start = System.nanoTime();
+        for (IndexWriter shard : shards) {
+            if (shard.hasUncommittedChanges()) {
+                shard.commit();
+            }
+        }
+        long took = ingestTimers.record(IngestStage.COMMIT, start) - start;
+
+        stats.recordCommit(took);
+        // rolled up by IngestSummaryLogger
+        if (log.isDebugEnabled()) {
+            log.debug("Committed {} docs in {} ms ({} docs/s, {} commits/s)",
+                    uncommittedDocs,
+                    took / 1_000_000,
+                    String.format("%.1f", stats.docsPerSecond()),
+                    String.format("%.2f", stats.commitsPerSecond()));
+        }
 
-        boolean isController = content.contains("@RestController") || content.contains("@Controller");
+        uncommittedDocs = 0;
 
-        boolean hasMapping =
-                content.contains("@RequestMapping") ||
-                        content.contains("@GetMapping") ||
-                        content.contains("@PostMapping") ||
-                        content.contains("@PutMapping") ||
-                        content.contains("@DeleteMapping");
+        for (Runnable listener : commitListeners) {
+            listener.run();
+        }
+    }
 
-        luceneDoc.add(new StringField("id", doc.getId(), Field.Store.YES));
-        luceneDoc.add(new Field("path", doc.getPath(), pathType));
-        luceneDoc.add(new Field("repo", doc.getRepo(), repoType));
-        luceneDoc.add(new Field("code", doc.getCode(), codeType));
-        luceneDoc.add(new TextField("lang", doc.getLang(), Field.Store.YES));
-        luceneDoc.add(new StringField("hash", doc.getHash(), Field.Store.YES));
-        luceneDoc.add(new TextField("symbols", extractSymbols(doc.getCode()), Field.Store.NO));
-        luceneDoc.add(new StringField("is_controller", isController ? "true" : "false", Field.Store.YES));
-        luceneDoc.add(new StringField("has_mapping", hasMapping ? "true" : "false", Field.Store.YES));
+    private boolean hasUncommittedChanges() {
+        for (IndexWriter shard : shards) {
+            if (shard.hasUncommittedChanges()) return true;
+        }
+        return false;
+    }
 
-        writer.addDocument(luceneDoc);
-        writer.commit();
+    /**
+     * Runs after every successful commit (e.g. to refresh NRT searchers).
+     */
+    public void addCommitListener(Runnable listener) {
+        commitListeners.add(listener);
     }
 
-    private String extractSymbols(String code) {
-        return code
-                .replaceAll("[^a-zA-Z0-9_]", " ")
-                .replaceAll("\\b(class|public|private|void|return)\\b", "");
+    /**
+     * Near-real-time searchers backed by this writer, one per shard in shard
+     * order; they see added documents without waiting for a commit.
+     */
+    public List<SearcherManager> newSearcherManagers() throws IOException {
+        List<SearcherManager> managers = new ArrayList<>(shards.length);
+        for (IndexWriter shard : shards) {
+            managers.add(new SearcherManager(shard, null));
+        }
+        return managers;
+    }
+
+    public Duration getMaxCommitLatency() {
+        return maxCommitLatency;
+    }
+
+    public IndexingStats getStats() {
+        return stats;
+    }
+
+    /** shared with RedisConsumer, which times the stages around the writer's */
+    public PhaseTimers<IngestStage> getIngestTimers() {
+        return ingestTimers;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        ingestTimers.bindTo(registry);
     }
 
 
     public synchronized long getNumDocs() throws IOException {
-        return writer.numRamDocs();
+        long total = 0;
+        for (IndexWriter shard : shards) {
+            total += shard.numRamDocs();
+        }
+        return total;
     }
 
+    @PreDestroy
     public void close() throws IOException {
-        writer.close();
+        commit();
+        IOUtils.close(shards);
     }
 }
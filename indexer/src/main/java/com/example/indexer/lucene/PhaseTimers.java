@@ -0,0 +1,63 @@
+package com.example.indexer.lucene;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One Micrometer timer per phase of a hot path, all under one name and told
+ * apart by a tag (indexer_search_phase_seconds{phase="collect"} in
+ * Prometheus). Recording is a nanoTime delta into a lock-free timer; bucket
+ * histograms are switched on per name prefix in application.properties.
+ *
+ * Until bound to a registry the timers are no-ops, so a searcher or writer
+ * built by hand (benchmarks, tests) pays nothing.
+ */
+public final class PhaseTimers<P extends Enum<P>> implements MeterBinder {
+
+    private final String name;
+    private final String tag;
+    private final String description;
+    private final P[] phases;
+    private volatile Timer[] timers;
+
+    PhaseTimers(String name, String tag, String description, Class<P> phases) {
+        this.name = name;
+        this.tag = tag;
+        this.description = description;
+        this.phases = phases.getEnumConstants();
+        // an empty composite hands out no-op meters
+        this.timers = register(new CompositeMeterRegistry());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        timers = register(registry);
+    }
+
+    private Timer[] register(MeterRegistry registry) {
+        Timer[] out = new Timer[phases.length];
+        for (P phase : phases) {
+            out[phase.ordinal()] = Timer.builder(name)
+                    .description(description)
+                    .tag(tag, phase.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        return out;
+    }
+
+    /**
+     * Records the time since {@code startNanos} (a System.nanoTime value)
+     * against the phase and returns the current time, so consecutive phases
+     * chain: {@code t = timers.record(QUERY, t)}.
+     */
+    public long record(P phase, long startNanos) {
+        long now = System.nanoTime();
+        timers[phase.ordinal()].record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.indexer.lucene;
+
+public enum QueryIntent {
+    REPO,
+    ENDPOINT,
+    CODE;
+
+    /** what the query text most likely looks for; drives the signal boosts */
+    public static QueryIntent detect(String q) {
+        String lq = q.toLowerCase();
+
+        if (lq.contains("/") ||
+                lq.contains("@get") ||
+                lq.contains("@post") ||
+                lq.contains("controller") ||
+                lq.contains("mapping")) {
+            return ENDPOINT;
+        }
+
+        if (lq.matches("[a-z0-9\\-]+") && lq.length() < 20) {
+            return REPO;
+        }
+
+        return CODE;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.indexer.lucene;
+
+import com.example.indexer.api.RankSignals;
+import com.example.indexer.model.IndexDocument;
+
+/**
+ * Computes a document's rank signals once, at ingestion. LuceneWriter stores
+ * the result as a bitmask doc value that the searcher boosts on.
+ * Register a different bean to plug in other heuristics.
+ */
+public interface RankSignalExtractor {
+
+    /**
+     * @return signals for the document; repoFrequency is query-time only and ignored
+     */
+    RankSignals extract(IndexDocument doc);
+}
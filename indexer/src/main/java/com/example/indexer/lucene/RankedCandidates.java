@@ -0,0 +1,43 @@
+package com.example.indexer.lucene;
+
+import java.util.List;
+
+/**
+ * The reranked candidate list of one query on one reader version.
+ *
+ * @param truncated more hits matched than were collected into the pool
+ * @param settled   leading candidates whose order can't change by widening the
+ *                  pool: reranking only lowers scores, so an uncollected hit can
+ *                  never beat a candidate scoring above the pool's raw floor
+ */
+record RankedCandidates(List<Candidate> candidates, long totalHits, int poolSize, boolean truncated, int settled) {
+
+    static RankedCandidates of(List<Candidate> sorted, long totalHits, int poolSize, boolean truncated, float rawFloor) {
+        int settled = sorted.size();
+        if (truncated) {
+            settled = 0;
+            while (settled < sorted.size() && sorted.get(settled).score() > rawFloor) {
+                settled++;
+            }
+        }
+        return new RankedCandidates(sorted, totalHits, poolSize, truncated, settled);
+    }
+
+    /**
+     * Index of the first candidate after the cursor (0 when there is none).
+     */
+    int indexAfter(SearchCursor cursor) {
+        if (cursor == null) return 0;
+
+        int lo = 0, hi = candidates.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (candidates.get(mid).isAfter(cursor)) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+}
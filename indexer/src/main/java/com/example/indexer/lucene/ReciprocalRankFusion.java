@@ -0,0 +1,49 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reciprocal-rank fusion: a doc scores the sum of 1/(k + rank) over the
+ * ranked lists it appears in (ranks from 1). Only ranks matter, so BM25 and
+ * cosine scores need no normalisation against each other; a larger k
+ * flattens the advantage of the very top ranks.
+ */
+final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * @return every doc of the lists once, by fused score descending, then doc id
+     */
+    static ScoreDoc[] fuse(int k, ScoreDoc[]... lists) {
+        Map<Integer, Float> fused = new HashMap<>();
+        for (ScoreDoc[] list : lists) {
+            for (int rank = 0; rank < list.length; rank++) {
+                fused.merge(list[rank].doc, 1f / (k + rank + 1), Float::sum);
+            }
+        }
+
+        ScoreDoc[] out = new ScoreDoc[fused.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Float> e : fused.entrySet()) {
+            out[i++] = new ScoreDoc(e.getKey(), e.getValue());
+        }
+        Arrays.sort(out, Comparator.comparingDouble((ScoreDoc sd) -> -sd.score).thenComparingInt(sd -> sd.doc));
+        return out;
+    }
+
+    /**
+     * Highest fused score that any doc can still reach once the first list
+     * is extended past its top n, assuming the other lists are complete:
+     * rank n+1 in the first list plus first place in every other one.
+     */
+    static float ceilingBeyond(int k, int n, int lists) {
+        return 1f / (k + n + 1) + (lists - 1) * (1f / (k + 1));
+    }
+}
@@ -0,0 +1,548 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Turns a java.util.regex pattern into a boolean query over the trigrams
+ * every match must contain, after Russ Cox's "Regular Expression Matching
+ * with a Trigram Index". For each subexpression it tracks the exact strings
+ * it can match while that set stays small, otherwise the possible prefixes
+ * and suffixes and the trigrams already known to be required; concatenation
+ * adds the trigrams that span the boundary.
+ *
+ * The result is a prefilter: it may accept chunks the regex does not match,
+ * which verification drops, but never one it does. Anything the analysis
+ * does not model (backreferences, comments mode, large classes) counts as
+ * "matches anything here". Trigrams are lowercase, as indexed, so the
+ * prefilter also holds for case-insensitive patterns.
+ */
+final class RegexTrigrams {
+
+    private static final int MAX_EXACT = 16;
+    private static final int MAX_AFFIX = 16;
+    private static final int MAX_CLASS = 4;
+    // dropping AND clauses only widens the prefilter; wider ORs are given up instead
+    private static final int MAX_AND = 24;
+    private static final int MAX_OR = 32;
+
+    private RegexTrigrams() {
+    }
+
+    /** the trigram prefilter for {@code regex}, or match-all when nothing is required */
+    static Query prefilter(String regex, String field) {
+        return toQuery(required(regex), field);
+    }
+
+    /** Required trigrams as a boolean tree; {@link Match#ALL} when there are none. */
+    static Match required(String regex) {
+        try {
+            Parser parser = new Parser(regex);
+            Info info = parser.alternation();
+            if (parser.pos < regex.length()) return Match.ALL;
+            return nonExact(info).match;
+        } catch (Unsupported e) {
+            return Match.ALL;
+        }
+    }
+
+    private static Query toQuery(Match match, String field) {
+        switch (match.op) {
+            case ALL:
+                return new MatchAllDocsQuery();
+            case GRAM:
+                return new TermQuery(new Term(field, match.gram));
+            default:
+                BooleanQuery.Builder builder = new BooleanQuery.Builder();
+                BooleanClause.Occur occur = match.op == Op.AND ? BooleanClause.Occur.FILTER : BooleanClause.Occur.SHOULD;
+                for (Match child : match.children) {
+                    builder.add(toQuery(child, field), occur);
+                }
+                return builder.build();
+        }
+    }
+
+    // ---------------------------------------------------------------- trigram trees
+
+    enum Op { ALL, GRAM, AND, OR }
+
+    /** AND / OR of trigrams; ALL accepts everything */
+    static final class Match {
+
+        static final Match ALL = new Match(Op.ALL, null, List.of());
+
+        final Op op;
+        final String gram;
+        final List<Match> children;
+
+        private Match(Op op, String gram, List<Match> children) {
+            this.op = op;
+            this.gram = gram;
+            this.children = children;
+        }
+
+        static Match gram(String gram) {
+            return new Match(Op.GRAM, gram, List.of());
+        }
+
+        static Match and(Match a, Match b) {
+            if (a.op == Op.ALL) return b;
+            if (b.op == Op.ALL) return a;
+            Set<Match> children = new LinkedHashSet<>();
+            for (Match m : new Match[]{a, b}) {
+                if (m.op == Op.AND) children.addAll(m.children);
+                else children.add(m);
+            }
+            if (children.size() == 1) return children.iterator().next();
+            return new Match(Op.AND, null, List.copyOf(children).subList(0, Math.min(children.size(), MAX_AND)));
+        }
+
+        static Match or(Match a, Match b) {
+            if (a.op == Op.ALL || b.op == Op.ALL) return ALL;
+            Set<Match> children = new LinkedHashSet<>();
+            for (Match m : new Match[]{a, b}) {
+                if (m.op == Op.OR) children.addAll(m.children);
+                else children.add(m);
+            }
+            if (children.size() == 1) return children.iterator().next();
+            if (children.size() > MAX_OR) return ALL;
+            return new Match(Op.OR, null, List.copyOf(children));
+        }
+
+        /** whether a text with these (lowercase) trigrams passes the filter */
+        boolean accepts(Set<String> grams) {
+            switch (op) {
+                case ALL:
+                    return true;
+                case GRAM:
+                    return grams.contains(gram);
+                case AND:
+                    return children.stream().allMatch(c -> c.accepts(grams));
+                default:
+                    return children.stream().anyMatch(c -> c.accepts(grams));
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Match m && op == m.op && Objects.equals(gram, m.gram)
+                    && children.equals(m.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(op, gram, children);
+        }
+
+        @Override
+        public String toString() {
+            switch (op) {
+                case ALL:
+                    return "*";
+                case GRAM:
+                    return gram;
+                default:
+                    List<String> parts = new ArrayList<>();
+                    children.forEach(c -> parts.add(c.op == Op.GRAM ? c.toString() : "(" + c + ")"));
+                    return String.join(op == Op.AND ? " AND " : " OR ", parts);
+            }
+        }
+    }
+
+    /** every trigram of s, all required; ALL when s is shorter than three code points */
+    private static Match grams(String s) {
+        Match m = Match.ALL;
+        int n = s.codePointCount(0, s.length());
+        for (int i = 0; i + 3 <= n; i++) {
+            int from = s.offsetByCodePoints(0, i);
+            m = Match.and(m, Match.gram(s.substring(from, s.offsetByCodePoints(from, 3))));
+        }
+        return m;
+    }
+
+    /** one of the strings occurs */
+    private static Match anyOf(Set<String> strings) {
+        Match m = null;
+        for (String s : strings) {
+            m = m == null ? grams(s) : Match.or(m, grams(s));
+        }
+        return m == null ? Match.ALL : m;
+    }
+
+    // ---------------------------------------------------------------- analysis
+
+    /**
+     * What is known about the strings a subexpression matches: exactly one of
+     * {@code exact} (lowercased), or the {@code prefix} / {@code suffix}
+     * sets (at most two code points each, "" meaning unknown) plus the
+     * trigrams {@code match} requires.
+     */
+    private record Info(boolean emptyable, Set<String> exact, Set<String> prefix, Set<String> suffix, Match match) {}
+
+    private static Info exact(boolean emptyable, Set<String> strings, Match match) {
+        return new Info(emptyable, strings, null, null, match);
+    }
+
+    private static Info inexact(boolean emptyable, Set<String> prefix, Set<String> suffix, Match match) {
+        if (emptyable) {
+            // the empty match has no prefix or suffix to contribute
+            prefix = union(prefix, Set.of(""));
+            suffix = union(suffix, Set.of(""));
+        }
+        return new Info(emptyable, null, capAffix(prefix, true), capAffix(suffix, false), match);
+    }
+
+    private static Info empty() {
+        return exact(true, Set.of(""), Match.ALL);
+    }
+
+    private static Info anyChar() {
+        return inexact(false, Set.of(""), Set.of(""), Match.ALL);
+    }
+
+    private static Info anything() {
+        return inexact(true, Set.of(""), Set.of(""), Match.ALL);
+    }
+
+    private static Info literal(int codePoint) {
+        return exact(false, Set.of(Character.toString(Character.toLowerCase(codePoint))), Match.ALL);
+    }
+
+    private static Info nonExact(Info info) {
+        if (info.exact == null) return info;
+        return inexact(info.emptyable, prefixes(info), suffixes(info), Match.and(info.match, anyOf(info.exact)));
+    }
+
+    private static Set<String> prefixes(Info info) {
+        if (info.exact == null) return info.prefix;
+        Set<String> out = new LinkedHashSet<>();
+        info.exact.forEach(s -> out.add(head(s, 2)));
+        return out;
+    }
+
+    private static Set<String> suffixes(Info info) {
+        if (info.exact == null) return info.suffix;
+        Set<String> out = new LinkedHashSet<>();
+        info.exact.forEach(s -> out.add(tail(s, 2)));
+        return out;
+    }
+
+    private static Info concat(Info left, Info right) {
+        if (left.exact != null && right.exact != null && left.exact.size() * right.exact.size() <= MAX_EXACT) {
+            return exact(left.emptyable && right.emptyable, cross(left.exact, right.exact),
+                    Match.and(left.match, right.match));
+        }
+
+        Match match = Match.and(nonExact(left).match, nonExact(right).match);
+        // trigrams spanning the boundary: one of the suffix+prefix pairs occurs
+        Match boundary = null;
+        for (String s : suffixes(left)) {
+            for (String p : prefixes(right)) {
+                boundary = boundary == null ? grams(s + p) : Match.or(boundary, grams(s + p));
+            }
+        }
+        if (boundary != null) match = Match.and(match, boundary);
+
+        Set<String> prefix = left.exact != null ? cross(left.exact, prefixes(right))
+                : left.emptyable ? union(left.prefix, prefixes(right))
+                : left.prefix;
+        Set<String> suffix = right.exact != null ? cross(suffixes(left), right.exact)
+                : right.emptyable ? union(right.suffix, suffixes(left))
+                : right.suffix;
+        return inexact(left.emptyable && right.emptyable, prefix, suffix, match);
+    }
+
+    private static Info alternate(Info left, Info right) {
+        if (left.exact != null && right.exact != null && left.exact.size() + right.exact.size() <= MAX_EXACT) {
+            return exact(left.emptyable || right.emptyable, union(left.exact, right.exact),
+                    Match.or(left.match, right.match));
+        }
+        Info l = nonExact(left);
+        Info r = nonExact(right);
+        return inexact(l.emptyable || r.emptyable, union(l.prefix, r.prefix), union(l.suffix, r.suffix),
+                Match.or(l.match, r.match));
+    }
+
+    /** {@code x{min,}} or {@code x{min,max}}; max -1 for unbounded */
+    private static Info repeat(Info info, int min, int max) {
+        if (min == 0 && max == 1) return alternate(info, empty());
+        if (min == 0) return anything();
+        // at least one copy: everything required of x is required of the whole
+        return nonExact(info);
+    }
+
+    private static Set<String> cross(Set<String> left, Set<String> right) {
+        Set<String> out = new LinkedHashSet<>();
+        for (String l : left) {
+            for (String r : right) {
+                out.add(l + r);
+            }
+        }
+        return out;
+    }
+
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        Set<String> out = new LinkedHashSet<>(a);
+        out.addAll(b);
+        return out;
+    }
+
+    /** affixes keep two code points; too many of them says nothing */
+    private static Set<String> capAffix(Set<String> affixes, boolean prefix) {
+        for (int keep = 2; keep >= 1; keep--) {
+            Set<String> out = new LinkedHashSet<>();
+            for (String s : affixes) {
+                out.add(prefix ? head(s, keep) : tail(s, keep));
+            }
+            if (out.size() <= MAX_AFFIX) return out;
+        }
+        return Set.of("");
+    }
+
+    private static String head(String s, int codePoints) {
+        int n = s.codePointCount(0, s.length());
+        return n <= codePoints ? s : s.substring(0, s.offsetByCodePoints(0, codePoints));
+    }
+
+    private static String tail(String s, int codePoints) {
+        int n = s.codePointCount(0, s.length());
+        return n <= codePoints ? s : s.substring(s.offsetByCodePoints(0, n - codePoints));
+    }
+
+    // ---------------------------------------------------------------- parsing
+
+    /** a construct the analysis gives up on: the whole pattern then requires nothing */
+    private static final class Unsupported extends RuntimeException {
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** recursive descent over java.util.regex syntax; the pattern has already compiled */
+    private static final class Parser {
+
+        private final String regex;
+        private int pos;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Info alternation() {
+            Info info = concatenation();
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                info = alternate(info, concatenation());
+            }
+            return info;
+        }
+
+        private Info concatenation() {
+            Info info = empty();
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                info = concat(info, repetition());
+            }
+            return info;
+        }
+
+        private Info repetition() {
+            Info info = atom();
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                if (c == '*') {
+                    pos++;
+                    info = repeat(info, 0, -1);
+                } else if (c == '+') {
+                    pos++;
+                    info = repeat(info, 1, -1);
+                } else if (c == '?') {
+                    pos++;
+                    info = repeat(info, 0, 1);
+                } else if (c == '{') {
+                    int close = regex.indexOf('}', pos);
+                    if (close < 0) throw new Unsupported();
+                    String[] bounds = regex.substring(pos + 1, close).split(",", -1);
+                    pos = close + 1;
+                    int min = Integer.parseInt(bounds[0].trim());
+                    int max = bounds.length == 1 ? min : bounds[1].isBlank() ? -1 : Integer.parseInt(bounds[1].trim());
+                    info = repeat(info, min, max);
+                } else {
+                    break;
+                }
+                // lazy and possessive forms match the same strings
+                if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) pos++;
+            }
+            return info;
+        }
+
+        private Info atom() {
+            int c = regex.codePointAt(pos);
+            pos += Character.charCount(c);
+            switch (c) {
+                case '(':
+                    return group();
+                case '[':
+                    return characterClass();
+                case '.':
+                    return anyChar();
+                case '^':
+                case '$':
+                    return empty();
+                case '\\':
+                    return escape();
+                default:
+                    return literal(c);
+            }
+        }
+
+        private Info group() {
+            boolean discard = false;
+            if (regex.startsWith("?", pos)) {
+                pos++;
+                if (regex.startsWith(":", pos) || regex.startsWith(">", pos)) {
+                    pos++;
+                } else if (regex.startsWith("=", pos) || regex.startsWith("!", pos)) {
+                    pos++;
+                    discard = true;
+                } else if (regex.startsWith("<=", pos) || regex.startsWith("<!", pos)) {
+                    pos += 2;
+                    discard = true;
+                } else if (regex.startsWith("<", pos)) {
+                    pos = regex.indexOf('>', pos) + 1;
+                    if (pos == 0) throw new Unsupported();
+                } else {
+                    // inline flags, (?i) or (?i:...); comments mode changes what the pattern means
+                    int end = pos;
+                    while (end < regex.length() && regex.charAt(end) != ')' && regex.charAt(end) != ':') end++;
+                    String flags = regex.substring(pos, end);
+                    int minus = flags.indexOf('-');
+                    if ((minus < 0 ? flags : flags.substring(0, minus)).indexOf('x') >= 0) throw new Unsupported();
+                    pos = end + 1;
+                    if (end < regex.length() && regex.charAt(end) == ')') return empty();
+                }
+            }
+            Info inner = alternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') throw new Unsupported();
+            pos++;
+            // lookaround consumes nothing
+            return discard ? empty() : inner;
+        }
+
+        /** a short list of plain characters is a set of exact strings; anything else is one unknown char */
+        private Info characterClass() {
+            Set<String> members = new LinkedHashSet<>();
+            boolean simple = true;
+            if (regex.startsWith("^", pos)) {
+                simple = false;
+                pos++;
+            }
+            int depth = 1;
+            boolean first = true;
+            while (pos < regex.length()) {
+                int c = regex.codePointAt(pos);
+                pos += Character.charCount(c);
+                if (c == ']' && !first) {
+                    if (--depth == 0) break;
+                } else if (c == '[') {
+                    depth++;
+                    simple = false;
+                } else if (c == '\\') {
+                    if (pos >= regex.length()) throw new Unsupported();
+                    int e = regex.codePointAt(pos);
+                    pos += Character.charCount(e);
+                    if (Character.isLetterOrDigit(e)) {
+                        if (e == 'Q' || e == 'p' || e == 'P' || e == 'x' || e == 'u' || e == 'N') throw new Unsupported();
+                        simple = false;
+                    } else {
+                        members.add(Character.toString(Character.toLowerCase(e)));
+                    }
+                } else if (c == '-' || c == '&') {
+                    simple = false;
+                } else {
+                    members.add(Character.toString(Character.toLowerCase(c)));
+                }
+                first = false;
+            }
+            if (depth != 0) throw new Unsupported();
+            return simple && !members.isEmpty() && members.size() <= MAX_CLASS
+                    ? exact(false, members, Match.ALL)
+                    : anyChar();
+        }
+
+        private Info escape() {
+            if (pos >= regex.length()) throw new Unsupported();
+            int c = regex.codePointAt(pos);
+            pos += Character.charCount(c);
+            switch (c) {
+                case 'b': case 'B': case 'A': case 'z': case 'Z': case 'G':
+                    return empty();
+                case 'd': case 'D': case 'w': case 'W': case 's': case 'S':
+                case 'h': case 'H': case 'v': case 'V': case 'R': case 'X':
+                    return anyChar();
+                case 't':
+                    return literal('\t');
+                case 'n':
+                    return literal('\n');
+                case 'r':
+                    return literal('\r');
+                case 'f':
+                    return literal('\f');
+                case 'a':
+                    return literal('\u0007');
+                case 'e':
+                    return literal('\u001B');
+                case 'Q': {
+                    int end = regex.indexOf("\\E", pos);
+                    String quoted = regex.substring(pos, end < 0 ? regex.length() : end);
+                    pos = end < 0 ? regex.length() : end + 2;
+                    Info info = empty();
+                    for (int i = 0; i < quoted.length(); ) {
+                        int q = quoted.codePointAt(i);
+                        info = concat(info, literal(q));
+                        i += Character.charCount(q);
+                    }
+                    return info;
+                }
+                case 'p': case 'P': case 'N': case 'x':
+                    if (regex.startsWith("{", pos)) {
+                        pos = regex.indexOf('}', pos) + 1;
+                        if (pos == 0) throw new Unsupported();
+                    } else {
+                        pos += c == 'x' ? 2 : 1;
+                    }
+                    return anyChar();
+                case 'u':
+                    pos += 4;
+                    return anyChar();
+                case 'c':
+                    pos++;
+                    return anyChar();
+                case '0':
+                    while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7') pos++;
+                    return anyChar();
+                case 'k':
+                    pos = regex.indexOf('>', pos) + 1;
+                    if (pos == 0) throw new Unsupported();
+                    return anything();
+                default:
+                    if (c >= '1' && c <= '9') {
+                        // backreference: whatever the group matched, possibly nothing
+                        while (pos < regex.length() && Character.isDigit(regex.charAt(pos))) pos++;
+                        return anything();
+                    }
+                    if (Character.isLetter(c)) throw new Unsupported();
+                    return literal(c);
+            }
+        }
+    }
+}
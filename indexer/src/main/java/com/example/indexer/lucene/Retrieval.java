@@ -0,0 +1,16 @@
+package com.example.indexer.lucene;
+
+/**
+ * Retrieval settings of one request. Part of every cache key, so pages of
+ * the same text under different modes or kNN sizes never mix.
+ *
+ * @param k             nearest neighbours kept for ranking (semantic and hybrid)
+ * @param numCandidates graph candidates explored per segment, at least k
+ */
+record Retrieval(SearchMode mode, int k, int numCandidates) {
+
+    String cacheKey(String normalizedQuery) {
+        if (mode == SearchMode.LEXICAL) return normalizedQuery;
+        return mode + ":" + k + ":" + numCandidates + ":" + normalizedQuery;
+    }
+}
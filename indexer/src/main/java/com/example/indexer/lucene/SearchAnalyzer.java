@@ -1,43 +1,117 @@
 package com.example.indexer.lucene;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
-import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.core.FlattenGraphFilter;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter;
+import org.apache.lucene.analysis.miscellaneous.WordDelimiterIterator;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
 import org.apache.lucene.analysis.synonym.SynonymGraphFilter;
 import org.apache.lucene.util.CharsRef;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import org.apache.lucene.analysis.synonym.SynonymMap;
 
+/**
+ * Analysis for code. Identifiers are split on case changes, '_', and
+ * letter/digit boundaries with the original kept, so {@code findOwner}
+ * matches {@code findOwnerById} and {@code find_owner}; annotations stay
+ * whole. The symbols field keeps identifiers unsplit minus language
+ * keywords, so an exact symbol match scores above a sub-word one. Every
+ * stage is a streaming token filter.
+ */
 @Component
 public class SearchAnalyzer {
 
+    public static final String SYMBOLS = "symbols";
+    public static final String TRIGRAMS = "trigrams";
+
+    private static final int WORD_DELIMITER_FLAGS = WordDelimiterGraphFilter.GENERATE_WORD_PARTS
+            | WordDelimiterGraphFilter.GENERATE_NUMBER_PARTS
+            | WordDelimiterGraphFilter.SPLIT_ON_CASE_CHANGE
+            | WordDelimiterGraphFilter.SPLIT_ON_NUMERICS
+            | WordDelimiterGraphFilter.PRESERVE_ORIGINAL
+            | WordDelimiterGraphFilter.IGNORE_KEYWORDS;
+
+    // not worth indexing as symbols: they occur in nearly every chunk
+    private static final CharArraySet KEYWORDS = new CharArraySet(List.of(
+            "abstract", "boolean", "break", "case", "catch", "class", "const", "def", "else", "enum",
+            "extends", "final", "for", "func", "function", "if", "implements", "import", "int",
+            "interface", "let", "long", "new", "null", "package", "private", "protected", "public",
+            "return", "static", "this", "throw", "throws", "try", "var", "void", "while"), false);
+
+    /** Query-time analyzer: word parts form a token graph the query parser understands. */
     public Analyzer build() throws IOException {
+        return build(false);
+    }
+
+    /** Index-time analyzer: the same chain, flattened so it can be written to postings. */
+    public Analyzer buildForIndexing() throws IOException {
+        return build(true);
+    }
+
+    private Analyzer build(boolean indexing) throws IOException {
         SynonymMap synonymMap = loadSynonyms();
 
-        return new Analyzer() {
+        Analyzer code = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String field) {
+                Tokenizer tokenizer = new CodeTokenizer();
+                // synonyms must see plain tokens: they cannot consume a graph
+                TokenStream stream = new SynonymGraphFilter(tokenizer, synonymMap, true);
+                stream = new AnnotationFilter(stream);
+                stream = new WordDelimiterGraphFilter(stream, true, WordDelimiterIterator.DEFAULT_WORD_DELIM_TABLE,
+                        WORD_DELIMITER_FLAGS, null);
+                stream = new LowerCaseFilter(stream);
+                if (indexing) {
+                    stream = new FlattenGraphFilter(stream);
+                }
+                return new TokenStreamComponents(tokenizer, stream);
+            }
+        };
+
+        Analyzer symbols = new Analyzer() {
             @Override
             protected TokenStreamComponents createComponents(String field) {
-                Tokenizer tokenizer = new StandardTokenizer();
+                Tokenizer tokenizer = new CodeTokenizer();
                 TokenStream stream = new LowerCaseFilter(tokenizer);
-                stream = new SynonymGraphFilter(stream, synonymMap, true);
+                stream = new StopFilter(stream, KEYWORDS);
                 return new TokenStreamComponents(tokenizer, stream);
             }
         };
+
+        // every overlapping three-character slice, for the regex prefilter (see RegexTrigrams)
+        Analyzer trigrams = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String field) {
+                Tokenizer tokenizer = new NGramTokenizer(3, 3);
+                return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+            }
+        };
+
+        return new PerFieldAnalyzerWrapper(code, Map.of(SYMBOLS, symbols, TRIGRAMS, trigrams));
     }
 
     private SynonymMap loadSynonyms() throws IOException {
-        Path path = Paths.get("src/main/resources/synonyms.txt");
+        // from the classpath, so it loads from the packaged jar and from any working directory
+        InputStream in = SearchAnalyzer.class.getResourceAsStream("/synonyms.txt");
+        if (in == null) throw new FileNotFoundException("synonyms.txt not on the classpath");
 
         SynonymMap.Builder builder = new SynonymMap.Builder(true);
-        try (BufferedReader br = Files.newBufferedReader(path)) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
             String line;
             while ((line = br.readLine()) != null) {
                 String[] parts = line.split("=>");
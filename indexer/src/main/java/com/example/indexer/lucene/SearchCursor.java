@@ -0,0 +1,37 @@
+package com.example.indexer.lucene;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque pagination token: position in the reranked order (score + stable
+ * document id). Lucene doc ids are deliberately not part of it, and neither
+ * is the reader version: a page after a refresh re-runs the query and
+ * resumes at the same (score, id).
+ */
+public record SearchCursor(float score, String id) {
+
+    /** A token this server did not issue; the caller's error, not the index's. */
+    public static final class InvalidCursorException extends IllegalArgumentException {
+        InvalidCursorException(Throwable cause) {
+            super("Invalid search cursor", cause);
+        }
+    }
+
+    public String encode() {
+        String raw = Float.floatToIntBits(score) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            return new SearchCursor(
+                    Float.intBitsToFloat(Integer.parseInt(parts[0])),
+                    parts[1]);
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException(e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.indexer.lucene;
+
+import java.util.Locale;
+
+/**
+ * Which retrieval path produces a search's candidates. Reranking, paging
+ * and snippets are shared by every mode.
+ */
+public enum SearchMode {
+    /** BM25 over code/path/repo/lang */
+    LEXICAL,
+    /** nearest neighbours of the query embedding in the HNSW graph */
+    SEMANTIC,
+    /** both of the above, run concurrently and fused by reciprocal rank */
+    HYBRID;
+
+    /** A mode this server doesn't know, or can't serve as configured; the caller's error. */
+    public static final class UnsupportedModeException extends IllegalArgumentException {
+        public UnsupportedModeException(String message) {
+            super(message);
+        }
+    }
+
+    public static SearchMode parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedModeException("Unknown search mode: " + value);
+        }
+    }
+
+    /** semantic and hybrid need the query embedded, so only work with embeddings enabled */
+    public boolean needsEmbeddings() {
+        return this != LEXICAL;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.indexer.lucene;
+
+/** Timed phases of LuceneSearcher.search, in execution order. */
+enum SearchPhase {
+    /** query parsing and analysis */
+    QUERY,
+    /** phase 1: lexical, kNN or hybrid candidate collection, including rescoring */
+    COLLECT,
+    /** phase 2: doc-value signals and repo-diversity reranking of the candidates */
+    RERANK,
+    /** best-scoring chunk of each page file */
+    BEST_CHUNKS,
+    /** stored fields (hash, line range) of the page */
+    FETCH,
+    /** snippets of the page */
+    HIGHLIGHT
+}
@@ -0,0 +1,59 @@
+package com.example.indexer.lucene;
+
+import com.example.indexer.api.SearchPage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded cache of finished result pages (Caffeine, W-TinyLFU eviction).
+ * Keys include the reader version, so a refreshed searcher never sees an old
+ * page; the searcher also clears the cache on refresh to free the memory.
+ */
+public class SearchResultCache {
+
+    private record Key(String query, int pageSize, String cursor, long readerVersion) {}
+
+    private final Cache<Key, SearchPage> cache;
+
+    public SearchResultCache(long maxEntries) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+    }
+
+    public SearchPage get(String query, int pageSize, String cursor, long readerVersion) {
+        return cache.getIfPresent(new Key(query, pageSize, cursor, readerVersion));
+    }
+
+    public void put(String query, int pageSize, String cursor, long readerVersion, SearchPage page) {
+        cache.put(new Key(query, pageSize, cursor, readerVersion), page);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /** hits, misses, evictions and size as cache_* metrics, cache="search-results" */
+    void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "search-results");
+    }
+
+    public Map<String, Object> snapshot() {
+        CacheStats stats = cache.stats();
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", cache.estimatedSize());
+        out.put("hits", stats.hitCount());
+        out.put("misses", stats.missCount());
+        out.put("evictions", stats.evictionCount());
+        out.put("hitRate", Math.round(stats.hitRate() * 1000) / 1000.0);
+        return out;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.indexer.lucene;
+
+import java.util.Locale;
+
+/**
+ * How documents are assigned to local shards. Changing either the routing or
+ * the shard count moves documents, so the index must be rebuilt.
+ */
+public enum ShardRouting {
+    /** hash of the stable document id — even spread */
+    ID,
+    /** hash of the repo — keeps a repo in one shard */
+    REPO;
+
+    static ShardRouting parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
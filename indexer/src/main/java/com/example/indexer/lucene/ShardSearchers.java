@@ -0,0 +1,197 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.ExitableDirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.QueryTimeout;
+import org.apache.lucene.search.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * One request's view over all local shards: a searcher acquired from every
+ * shard's SearcherManager, stitched into a MultiReader.
+ *
+ * The MultiReader gives global term statistics, so BM25 scores are the same
+ * as for a single index, and global doc ids that the rest of the pipeline
+ * (doc values, stored fields, highlighting) can use unchanged.
+ *
+ * Collection runs on a deadline-bound view of the same readers. With an
+ * executor it is concurrent: leaves are grouped into slices (never crossing
+ * a shard) and each slice runs as one task, all sharing a single top-K so a
+ * slice stops early once it can't compete.
+ */
+class ShardSearchers implements Closeable {
+
+    private final List<SearcherManager> managers;
+    private final IndexSearcher[] acquired;
+
+    /** global view over every shard, for reads after collection */
+    final IndexSearcher searcher;
+
+    /** sum of shard reader versions — strictly increases whenever any shard refreshes */
+    final long version;
+
+    private final DirectoryReader[] readers;
+    private final Executor executor;
+    private final SliceLimits sliceLimits;
+    private final int[] shardStarts;
+
+    private ShardSearchers(List<SearcherManager> managers, IndexSearcher[] acquired,
+                           Executor executor, SliceLimits sliceLimits) throws IOException {
+        this.managers = managers;
+        this.acquired = acquired;
+
+        this.executor = executor;
+        this.sliceLimits = sliceLimits;
+        this.readers = new DirectoryReader[acquired.length];
+        long v = 0;
+        for (int i = 0; i < acquired.length; i++) {
+            readers[i] = (DirectoryReader) acquired[i].getIndexReader();
+            v += readers[i].getVersion();
+        }
+        this.version = v;
+
+        shardStarts = new int[readers.length + 1];
+        for (int i = 0; i < readers.length; i++) {
+            shardStarts[i + 1] = shardStarts[i] + readers[i].maxDoc();
+        }
+
+        this.searcher = new IndexSearcher(new MultiReader(readers, false));
+    }
+
+    static ShardSearchers acquire(List<SearcherManager> managers, Executor executor, SliceLimits sliceLimits) throws IOException {
+        IndexSearcher[] acquired = new IndexSearcher[managers.size()];
+        try {
+            for (int i = 0; i < acquired.length; i++) {
+                acquired[i] = managers.get(i).acquire();
+            }
+            return new ShardSearchers(managers, acquired, executor, sliceLimits);
+        } catch (IOException | RuntimeException e) {
+            release(managers, acquired);
+            throw e;
+        }
+    }
+
+    /**
+     * Top-n over all shards with global doc ids. Slices share the minimum
+     * competitive score, so low-scoring slices skip blocks they can't win.
+     *
+     * Rewrite and collection both run on the deadline-bound view, so term
+     * expansion, kNN graph search and scoring all give up once the deadline
+     * passes; hits collected so far are kept and the deadline is marked
+     * partial.
+     */
+    TopDocs searchTop(Query query, int n, Deadline deadline) throws IOException {
+        BoundedSearcher bounded = bounded(deadline);
+        bounded.setTimeout(deadline);
+
+        TopDocs top;
+        try {
+            top = bounded.search(query, TopScoreDocCollector.createSharedManager(n, null, n));
+        } catch (ExitableDirectoryReader.ExitingReaderException e) {
+            // ran out while rewriting: nothing was collected
+            deadline.markPartial();
+            return new TopDocs(new TotalHits(0, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO), new ScoreDoc[0]);
+        }
+
+        if (bounded.timedOut() || bounded.exited) {
+            deadline.markPartial();
+        }
+        return top;
+    }
+
+    /**
+     * Same docs and doc ids as {@link #searcher}, but term enumeration, doc
+     * values and vector search throw ExitingReaderException once the timeout
+     * fires. Searches on it run on the executor.
+     */
+    BoundedSearcher bounded(QueryTimeout timeout) throws IOException {
+        IndexReader[] exitable = new IndexReader[readers.length];
+        for (int i = 0; i < readers.length; i++) {
+            exitable[i] = new ExitableDirectoryReader(readers[i], timeout);
+        }
+        return new BoundedSearcher(new MultiReader(exitable, false));
+    }
+
+    /** sliced, concurrent searcher over the exitable readers */
+    class BoundedSearcher extends IndexSearcher {
+
+        /** a leaf gave up mid-collection */
+        volatile boolean exited;
+
+        private BoundedSearcher(IndexReader reader) {
+            super(reader, executor);
+        }
+
+        @Override
+        protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+            return sliceByShard(leaves, sliceLimits);
+        }
+
+        /** an expired leaf keeps its hits so far instead of failing the whole search */
+        @Override
+        protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
+            for (LeafReaderContext ctx : leaves) {
+                try {
+                    super.search(List.of(ctx), weight, collector);
+                } catch (ExitableDirectoryReader.ExitingReaderException e) {
+                    exited = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lucene's size-based slicing, applied within each shard. Small NRT
+     * segments get packed together so per-task overhead doesn't dominate,
+     * while big merged segments end up alone in their own slice.
+     */
+    private IndexSearcher.LeafSlice[] sliceByShard(List<LeafReaderContext> leaves, SliceLimits limits) {
+        List<List<LeafReaderContext>> perShard = new ArrayList<>(acquired.length);
+        for (int i = 0; i < acquired.length; i++) {
+            perShard.add(new ArrayList<>());
+        }
+        for (LeafReaderContext ctx : leaves) {
+            perShard.get(shardOf(ctx.docBase)).add(ctx);
+        }
+
+        List<IndexSearcher.LeafSlice> slices = new ArrayList<>();
+        for (List<LeafReaderContext> shardLeaves : perShard) {
+            slices.addAll(Arrays.asList(
+                    IndexSearcher.slices(shardLeaves, limits.maxDocs(), limits.maxSegments())));
+        }
+        return slices.toArray(new IndexSearcher.LeafSlice[0]);
+    }
+
+    private int shardOf(int docBase) {
+        for (int i = acquired.length - 1; i > 0; i--) {
+            if (docBase >= shardStarts[i]) return i;
+        }
+        return 0;
+    }
+
+    /** upper bounds on one slice: total docs and number of segments */
+    record SliceLimits(int maxDocs, int maxSegments) {
+    }
+
+    @Override
+    public void close() throws IOException {
+        release(managers, acquired);
+    }
+
+    private static void release(List<SearcherManager> managers, IndexSearcher[] acquired) throws IOException {
+        for (int i = 0; i < acquired.length; i++) {
+            if (acquired[i] != null) {
+                managers.get(i).release(acquired[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DoubleValues;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.io.IOException;
+
+import static com.example.indexer.api.RankSignals.*;
+
+/**
+ * Intent-aware multiplicative boost read from the index-time "signals"
+ * bitmask. Wrapped in a FunctionScoreQuery so the boosts apply while
+ * collecting instead of as a post-pass over the candidates.
+ */
+public class SignalBoostValuesSource extends DoubleValuesSource {
+
+    private final QueryIntent intent;
+
+    public SignalBoostValuesSource(QueryIntent intent) {
+        this.intent = intent;
+    }
+
+    static double boost(long mask, QueryIntent intent) {
+        double boost = 1.0;
+        boolean controller = (mask & CONTROLLER) != 0;
+
+        if (intent == QueryIntent.ENDPOINT) {
+            if (controller && (mask & MAPPING) != 0) boost *= 4.0;
+            if (!controller) boost *= 0.2;
+        }
+
+        if (intent == QueryIntent.CODE) {
+            if ((mask & TEST) != 0) boost *= 0.3;
+            if ((mask & CONFIG) != 0) boost *= 0.4;
+        }
+
+        if (intent == QueryIntent.REPO) {
+            if (controller) boost *= 0.3;
+            if ((mask & ENTRY_POINT) != 0) boost *= 5.0;
+        }
+
+        return boost;
+    }
+
+    @Override
+    public DoubleValues getValues(LeafReaderContext ctx, DoubleValues scores) throws IOException {
+        NumericDocValues signals = DocValues.getNumeric(ctx.reader(), "signals");
+
+        return new DoubleValues() {
+            private double value;
+
+            @Override
+            public double doubleValue() {
+                return value;
+            }
+
+            @Override
+            public boolean advanceExact(int doc) throws IOException {
+                // docs indexed before signals existed are left unboosted
+                value = signals.advanceExact(doc) ? boost(signals.longValue(), intent) : 1.0;
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    @Override
+    public DoubleValuesSource rewrite(IndexSearcher searcher) {
+        return this;
+    }
+
+    @Override
+    public boolean isCacheable(LeafReaderContext ctx) {
+        return DocValues.isCacheable(ctx, "signals");
+    }
+
+    @Override
+    public int hashCode() {
+        return intent.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SignalBoostValuesSource other && other.intent == intent;
+    }
+
+    @Override
+    public String toString() {
+        return "signals(" + intent + ")";
+    }
+}
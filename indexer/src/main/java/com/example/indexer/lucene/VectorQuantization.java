@@ -0,0 +1,27 @@
+package com.example.indexer.lucene;
+
+import java.util.Locale;
+
+/**
+ * How the HNSW graph stores embedding vectors. Takes effect per segment as
+ * segments are written or merged, so an existing index converts gradually
+ * (or at once after a force merge) without a reindex.
+ */
+public enum VectorQuantization {
+    /** 32-bit floats: exact scores, 4 bytes per dimension searched */
+    NONE,
+    /**
+     * Scalar-quantized to one byte per dimension for the graph search; the
+     * float vectors are kept alongside and used to rescore the top hits.
+     */
+    INT8;
+
+    static VectorQuantization parse(String value) {
+        String v = value.trim().toUpperCase(Locale.ROOT);
+        if (v.equals("INT4")) {
+            // 4-bit storage arrives with Lucene 9.10 (Lucene99HnswScalarQuantizedVectorsFormat bits=4)
+            throw new IllegalArgumentException("int4 quantization needs Lucene 9.10+; use int8");
+        }
+        return valueOf(v);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FloatVectorValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.DoubleValues;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Second pass over quantized kNN hits: each hit is scored again against its
+ * full-precision vector, so only the (few) top candidates pay for float
+ * reads while the graph search runs on the compact quantized copy.
+ */
+final class VectorRescorer {
+
+    private VectorRescorer() {
+    }
+
+    /**
+     * @param boost multiplied into the exact similarity, as in the first pass; null for none
+     * @return the best k hits by exact score descending, then doc id
+     */
+    static TopDocs rescore(IndexReader reader, String field, float[] query, TopDocs hits, int k,
+                           DoubleValuesSource boost) throws IOException {
+        ScoreDoc[] byDoc = hits.scoreDocs.clone();
+        // vector and doc values iterators only move forward
+        Arrays.sort(byDoc, Comparator.comparingInt(sd -> sd.doc));
+
+        List<LeafReaderContext> leaves = reader.leaves();
+        ScoreDoc[] rescored = new ScoreDoc[byDoc.length];
+        int leafIndex = -1;
+        LeafReaderContext leaf = null;
+        FloatVectorValues vectors = null;
+        FieldInfo info = null;
+        DoubleValues boosts = null;
+
+        for (int i = 0; i < byDoc.length; i++) {
+            ScoreDoc hit = byDoc[i];
+            int next = ReaderUtil.subIndex(hit.doc, leaves);
+            if (next != leafIndex) {
+                leafIndex = next;
+                leaf = leaves.get(next);
+                vectors = leaf.reader().getFloatVectorValues(field);
+                info = leaf.reader().getFieldInfos().fieldInfo(field);
+                boosts = boost == null ? null : boost.getValues(leaf, null);
+            }
+
+            int local = hit.doc - leaf.docBase;
+            float score = hit.score;
+            int at = vectors == null ? -1 : vectors.docID() < local ? vectors.advance(local) : vectors.docID();
+            if (at == local) {
+                score = info.getVectorSimilarityFunction().compare(query, vectors.vectorValue());
+                if (boosts != null && boosts.advanceExact(local)) {
+                    score *= (float) boosts.doubleValue();
+                }
+            }
+            rescored[i] = new ScoreDoc(hit.doc, score, hit.shardIndex);
+        }
+
+        Arrays.sort(rescored, Comparator.comparingDouble((ScoreDoc sd) -> -sd.score).thenComparingInt(sd -> sd.doc));
+        return new TopDocs(hits.totalHits, Arrays.copyOf(rescored, Math.min(k, rescored.length)));
+    }
+}
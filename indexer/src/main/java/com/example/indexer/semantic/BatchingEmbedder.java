@@ -0,0 +1,289 @@
+package com.example.indexer.semantic;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ingest-side embedding pipeline in front of the provider:
+ *
+ *  - content-hash cache: a hash that was embedded once is served from
+ *    EmbeddingCache, and concurrent requests for one hash share a future
+ *  - coalescing: queued texts go out together, up to batch-size per call,
+ *    waiting at most linger-ms for a batch to fill
+ *  - bounded concurrency: at most max-in-flight provider calls at a time;
+ *    further batches wait in the queue (backpressure on the workers)
+ *  - retry: transient failures back off exponentially with jitter
+ *
+ * Only created with indexer.embeddings.enabled=true, so a lexical-only
+ * indexer opens no cache file and starts no threads.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(
+        name = "indexer.embeddings.enabled",
+        havingValue = "true")
+public class BatchingEmbedder {
+
+    private record Pending(String key, String text, CompletableFuture<float[]> future) {}
+
+    private final EmbeddingProvider provider;
+    private final EmbeddingCache cache;
+
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Semaphore inFlight;
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Map<String, CompletableFuture<float[]>> pendingByKey = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher;
+    private final Thread batcher;
+    private volatile boolean running = true;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder embedded = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public BatchingEmbedder(EmbeddingProvider provider,
+                            @Value("${indexer.embeddings.cache-dir:embedding-cache}") String cacheDir,
+                            @Value("${indexer.embeddings.batch.size:64}") int batchSize,
+                            @Value("${indexer.embeddings.batch.linger-ms:5}") long lingerMs,
+                            @Value("${indexer.embeddings.max-in-flight:4}") int maxInFlight,
+                            @Value("${indexer.embeddings.retry.max-attempts:4}") int maxAttempts,
+                            @Value("${indexer.embeddings.retry.backoff-ms:200}") long backoffMs) throws IOException {
+        this.provider = provider;
+        this.cache = cacheDir == null || cacheDir.isBlank()
+                ? EmbeddingCache.inMemory(provider.dimension())
+                : EmbeddingCache.open(
+                        Path.of(cacheDir, provider.name() + "-" + provider.dimension() + ".bin"),
+                        provider.dimension());
+
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = Math.max(1, backoffMs);
+
+        AtomicInteger threadNum = new AtomicInteger();
+        this.dispatcher = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "embedding-call-" + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.batcher = new Thread(this::batchLoop, "embedding-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    public EmbeddingProvider provider() {
+        return provider;
+    }
+
+    /**
+     * @param key content hash of the text, or null to skip caching
+     * @return completes with the vector, or exceptionally once retries are exhausted
+     */
+    public CompletableFuture<float[]> embed(String key, String text) {
+        if (key == null) {
+            CompletableFuture<float[]> future = new CompletableFuture<>();
+            queue.add(new Pending(null, text, future));
+            return future;
+        }
+
+        float[] cached = cached(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // Checked again under the map's lock: a request for this key may have been
+        // cached and left pendingByKey since the lookup above, and must not be re-queued
+        CompletableFuture<float[]> future = pendingByKey.computeIfAbsent(key, k -> {
+            float[] hit = cached(k);
+            if (hit != null) {
+                return CompletableFuture.completedFuture(hit);
+            }
+            CompletableFuture<float[]> queued = new CompletableFuture<>();
+            queue.add(new Pending(k, text, queued));
+            return queued;
+        });
+        if (future.isDone()) {
+            // a cache hit from the re-check; a queued future leaves the map before it completes
+            pendingByKey.remove(key, future);
+        }
+        return future;
+    }
+
+    private float[] cached(String key) {
+        try {
+            float[] vector = cache.get(key);
+            if (vector != null) {
+                cacheHits.increment();
+            }
+            return vector;
+        } catch (IOException e) {
+            log.warn("Embedding cache read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void batchLoop() {
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+
+                List<Pending> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long lingerUntil = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = lingerUntil - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0) break;
+
+                    Pending next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                inFlight.acquire();
+                dispatcher.execute(() -> {
+                    try {
+                        call(batch);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void call(List<Pending> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            texts.add(p.text());
+        }
+
+        List<float[]> vectors;
+        try {
+            vectors = embedWithRetry(texts);
+            if (vectors.size() != texts.size()) {
+                throw new IOException("Provider returned " + vectors.size() + " vectors for " + texts.size() + " texts");
+            }
+        } catch (Exception e) {
+            failures.add(batch.size());
+            log.warn("Embedding batch of {} failed: {}", batch.size(), e.getMessage());
+            for (Pending p : batch) {
+                finish(p, null, e);
+            }
+            return;
+        }
+
+        int dimension = provider.dimension();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending p = batch.get(i);
+            float[] vector = vectors.get(i);
+            // a misconfigured dimension fails the document here, not later in the index or the cache
+            if (vector == null || vector.length != dimension) {
+                failures.increment();
+                IOException e = new IOException("Provider returned a vector of dimension "
+                        + (vector == null ? 0 : vector.length) + ", expected " + dimension
+                        + " (indexer.embeddings.dimension)");
+                log.warn("Embedding failed for {}: {}", p.key(), e.getMessage());
+                finish(p, null, e);
+                continue;
+            }
+
+            embedded.increment();
+            if (p.key() != null) {
+                try {
+                    cache.put(p.key(), vector);
+                } catch (IOException e) {
+                    log.warn("Embedding cache write failed for {}: {}", p.key(), e.getMessage());
+                }
+            }
+            finish(p, vector, null);
+        }
+    }
+
+    private List<float[]> embedWithRetry(List<String> texts) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                requests.increment();
+                return provider.embedAll(texts);
+            } catch (IOException e) {
+                boolean retryable = !(e instanceof EmbeddingHttpException http) || http.isRetryable();
+                if (!retryable || attempt >= maxAttempts || !running) throw e;
+
+                long sleep = backoffMs << (attempt - 1);
+                sleep += ThreadLocalRandom.current().nextLong(sleep / 2 + 1);
+                retries.increment();
+                log.debug("Embedding attempt {} failed ({}), retrying in {} ms", attempt, e.getMessage(), sleep);
+                Thread.sleep(sleep);
+            }
+        }
+    }
+
+    private void finish(Pending p, float[] vector, Throwable error) {
+        // cached before the future completes, so a later lookup never re-queues it
+        if (p.key() != null) {
+            pendingByKey.remove(p.key(), p.future());
+        }
+        if (error == null) {
+            p.future().complete(vector);
+        } else {
+            p.future().completeExceptionally(error);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("provider", provider.name());
+        out.put("cached", cache.size());
+        out.put("cacheHits", cacheHits.sum());
+        out.put("embedded", embedded.sum());
+        out.put("requests", requests.sum());
+        out.put("retries", retries.sum());
+        out.put("failures", failures.sum());
+        out.put("queued", queue.size());
+        return out;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        running = false;
+        batcher.interrupt();
+        dispatcher.shutdown();
+        try {
+            dispatcher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cache.close();
+    }
+}
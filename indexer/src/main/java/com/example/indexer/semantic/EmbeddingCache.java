@@ -0,0 +1,140 @@
+package com.example.indexer.semantic;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-hash → embedding, so a file whose content was embedded once is
+ * never sent to the provider again — across restarts and reindexes too.
+ *
+ * Persisted as an append-only log of [key length][key][dimension floats];
+ * only key → file offset is kept on the heap and vectors are read back with
+ * positional reads (normally from the OS page cache). A torn last record
+ * from a crash is cut off when the file is reopened. Without a file the
+ * vectors live on the heap, for tests and benchmarks.
+ */
+@Slf4j
+public class EmbeddingCache implements Closeable {
+
+    private final int dimension;
+    private final FileChannel channel;
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+    private final Map<String, float[]> onHeap;
+    private long end;
+
+    private EmbeddingCache(int dimension, FileChannel channel) {
+        this.dimension = dimension;
+        this.channel = channel;
+        this.onHeap = channel == null ? new ConcurrentHashMap<>() : null;
+    }
+
+    public static EmbeddingCache inMemory(int dimension) {
+        return new EmbeddingCache(dimension, null);
+    }
+
+    /**
+     * @param file one file per vector space (provider name + dimension)
+     */
+    public static EmbeddingCache open(Path file, int dimension) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        EmbeddingCache cache = new EmbeddingCache(dimension, channel);
+        cache.load();
+        log.info("Embedding cache {} holds {} vectors", file, cache.size());
+        return cache;
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        long pos = 0;
+        ByteBuffer len = ByteBuffer.allocate(Short.BYTES);
+
+        while (pos + Short.BYTES <= size) {
+            len.clear();
+            channel.read(len, pos);
+            int keyLen = len.flip().getShort() & 0xFFFF;
+            long vectorAt = pos + Short.BYTES + keyLen;
+            long next = vectorAt + (long) dimension * Float.BYTES;
+            if (next > size) break;
+
+            ByteBuffer key = ByteBuffer.allocate(keyLen);
+            channel.read(key, pos + Short.BYTES);
+            offsets.put(new String(key.array(), StandardCharsets.UTF_8), vectorAt);
+            pos = next;
+        }
+
+        if (pos < size) {
+            log.warn("Embedding cache: dropping {} bytes of a torn record", size - pos);
+            channel.truncate(pos);
+        }
+        end = pos;
+    }
+
+    public float[] get(String key) throws IOException {
+        if (onHeap != null) return onHeap.get(key);
+
+        Long at = offsets.get(key);
+        if (at == null) return null;
+
+        ByteBuffer buf = ByteBuffer.allocate(dimension * Float.BYTES);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, at + buf.position()) < 0) return null;
+        }
+        float[] vector = new float[dimension];
+        buf.flip().asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    public void put(String key, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dims, got " + vector.length);
+        }
+        if (onHeap != null) {
+            onHeap.put(key, vector);
+            return;
+        }
+        if (offsets.containsKey(key)) return;
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Short.BYTES + keyBytes.length + vector.length * Float.BYTES);
+        record.putShort((short) keyBytes.length).put(keyBytes);
+        record.asFloatBuffer().put(vector);
+        record.position(record.limit()).flip();
+
+        synchronized (this) {
+            if (offsets.containsKey(key)) return;
+            long at = end;
+            while (record.hasRemaining()) {
+                channel.write(record, at + record.position());
+            }
+            end = at + record.limit();
+            offsets.put(key, at + Short.BYTES + keyBytes.length);
+        }
+    }
+
+    public int size() {
+        return onHeap != null ? onHeap.size() : offsets.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
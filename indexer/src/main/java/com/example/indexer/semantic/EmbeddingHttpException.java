@@ -0,0 +1,25 @@
+package com.example.indexer.semantic;
+
+import java.io.IOException;
+
+/**
+ * Non-200 answer from an embedding endpoint. Rate limits and server errors
+ * are worth retrying; any other 4xx will fail the same way again.
+ */
+public class EmbeddingHttpException extends IOException {
+
+    private final int status;
+
+    public EmbeddingHttpException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isRetryable() {
+        return status == 429 || status >= 500;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.indexer.semantic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns text into a fixed-size vector for the HNSW "embedding" field.
+ * Exactly one provider bean is active, chosen by indexer.embeddings.provider;
+ * the same provider must be used for indexing and querying.
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Identifies the vector space (model + version). Cached embeddings are
+     * only reused by a provider with the same name and dimension.
+     */
+    String name();
+
+    /** length of every vector this provider returns */
+    int dimension();
+
+    float[] embed(String text) throws IOException;
+
+    /**
+     * One vector per text, in order. Remote providers override this to send
+     * the whole batch in one request.
+     */
+    default List<float[]> embedAll(List<String> texts) throws IOException {
+        List<float[]> out = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            out.add(embed(text));
+        }
+        return out;
+    }
+}
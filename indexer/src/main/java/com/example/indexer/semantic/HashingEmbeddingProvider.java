@@ -0,0 +1,95 @@
+package com.example.indexer.semantic;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deterministic, offline embeddings: identifiers are split on camelCase and
+ * underscores, and each sub-word is feature-hashed into a signed bucket with
+ * a sublinear term weight. Texts sharing vocabulary end up close in cosine
+ * space — no model, no network, same vector on every machine. Meant for
+ * local runs and tests; use a real model provider for semantic quality.
+ */
+@Component
+@ConditionalOnProperty(
+        name = "indexer.embeddings.provider",
+        havingValue = "local",
+        matchIfMissing = true)
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    private final int dimension;
+
+    public HashingEmbeddingProvider(@Value("${indexer.embeddings.dimension:256}") int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public String name() {
+        return "local-hash-v1";
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] counts = new float[dimension];
+        float[] vector = new float[dimension];
+        if (text == null) return unit(vector);
+
+        int len = text.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++) {
+            char c = i < len ? text.charAt(i) : ' ';
+            boolean part = Character.isLetterOrDigit(c);
+
+            // a sub-word ends at a non-alphanumeric or a lower→Upper camelCase step
+            boolean boundary = !part
+                    || (start >= 0 && Character.isUpperCase(c) && Character.isLowerCase(text.charAt(i - 1)));
+            if (boundary && start >= 0) {
+                addToken(text, start, i, counts);
+                start = -1;
+            }
+            if (part && start < 0) {
+                start = i;
+            }
+        }
+
+        for (int i = 0; i < dimension; i++) {
+            float c = counts[i];
+            if (c != 0) {
+                vector[i] = Math.copySign((float) (1 + Math.log(Math.abs(c))), c);
+            }
+        }
+        return unit(vector);
+    }
+
+    private void addToken(String text, int from, int to, float[] counts) {
+        if (to - from < 2) return;
+
+        // lowercase FNV-1a: stable across JVMs, unlike identity hashes
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            h ^= Character.toLowerCase(text.charAt(i));
+            h *= 0x01000193;
+        }
+        int bucket = Math.floorMod(h, dimension);
+        counts[bucket] += (h & 0x80000000) == 0 ? 1 : -1;
+    }
+
+    /** COSINE rejects all-zero vectors, so empty text gets a fixed unit vector */
+    private static float[] unit(float[] v) {
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        if (norm == 0) {
+            v[0] = 1;
+            return v;
+        }
+        float inv = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < v.length; i++) v[i] *= inv;
+        return v;
+    }
+}
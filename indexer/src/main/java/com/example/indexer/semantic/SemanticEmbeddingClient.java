@@ -1,48 +1,117 @@
 package com.example.indexer.semantic;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import okhttp3.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.List;
 
-public class SemanticEmbeddingClient {
+/**
+ * OpenAI-compatible /embeddings client. A batch of texts goes out as one
+ * request; retries, coalescing and caching are left to BatchingEmbedder.
+ */
+@Component
+@ConditionalOnProperty(
+        name = "indexer.embeddings.provider",
+        havingValue = "openai")
+public class SemanticEmbeddingClient implements EmbeddingProvider {
 
-    private static final String OPENAI_URL =
-            "https://api.openai.com/v1/embeddings";
+    private record EmbeddingRequest(String model, List<String> input, int dimensions) {}
 
-    private final OkHttpClient client = new OkHttpClient();
+    private record EmbeddingResponse(List<Item> data) {}
+
+    private record Item(int index, float[] embedding) {}
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
     private final ObjectMapper mapper = new ObjectMapper();
+    private final URI url;
     private final String apiKey;
+    private final String model;
+    private final int dimension;
+    private final Duration requestTimeout;
 
-    public SemanticEmbeddingClient(String apiKey) {
+    public SemanticEmbeddingClient(@Value("${indexer.embeddings.url:https://api.openai.com/v1/embeddings}") String url,
+                                   @Value("${indexer.embeddings.api-key:}") String apiKey,
+                                   @Value("${indexer.embeddings.model:text-embedding-3-small}") String model,
+                                   @Value("${indexer.embeddings.dimension:256}") int dimension,
+                                   @Value("${indexer.embeddings.request-timeout-ms:30000}") long requestTimeoutMs) {
+        this.url = URI.create(url);
         this.apiKey = apiKey;
+        this.model = model;
+        this.dimension = dimension;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
     }
 
-    public float[] embed(String text) throws Exception {
-        String body = """
-            {
-              "model": "text-embedding-3-small",
-              "input": %s
-            }
-            """.formatted(mapper.writeValueAsString(text));
+    @Override
+    public String name() {
+        return model;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) throws IOException {
+        return embedAll(List.of(text)).get(0);
+    }
 
-        Request request = new Request.Builder()
-                .url(OPENAI_URL)
-                .addHeader("Authorization", "Bearer " + apiKey)
-                .post(RequestBody.create(body, MediaType.parse("application/json")))
+    @Override
+    public List<float[]> embedAll(List<String> texts) throws IOException {
+        // text-embedding-3 models shorten to the requested size server-side
+        byte[] body = mapper.writeValueAsBytes(new EmbeddingRequest(model, texts, dimension));
+
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(requestTimeout)
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            JsonNode root = mapper.readTree(response.body().string());
-            JsonNode arr = root.get("data").get(0).get("embedding");
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while embedding", e);
+        }
+        if (response.statusCode() != 200) {
+            throw new EmbeddingHttpException(response.statusCode(),
+                    "Embedding request failed: HTTP " + response.statusCode());
+        }
+
+        EmbeddingResponse parsed;
+        try {
+            parsed = mapper.readValue(response.body(), EmbeddingResponse.class);
+        } catch (JacksonException e) {
+            throw new IOException("Malformed embedding response: " + e.getOriginalMessage(), e);
+        }
+        if (parsed.data() == null || parsed.data().size() != texts.size()) {
+            throw new IOException("Embedding response has " + (parsed.data() == null ? 0 : parsed.data().size())
+                    + " vectors for " + texts.size() + " inputs");
+        }
 
-            float[] vec = new float[arr.size()];
-            for (int i = 0; i < arr.size(); i++) {
-                vec[i] = arr.get(i).floatValue();
+        float[][] out = new float[texts.size()][];
+        for (Item item : parsed.data()) {
+            if (item.index() < 0 || item.index() >= out.length || item.embedding() == null) {
+                throw new IOException("Embedding response has a bad item at index " + item.index());
             }
-            return vec;
+            if (out[item.index()] != null) {
+                throw new IOException("Embedding response has a duplicate item at index " + item.index());
+            }
+            out[item.index()] = item.embedding();
         }
+        return List.of(out);
     }
 }
-
@@ -1,11 +1,15 @@
 package com.example.indexer.service;
 
+import com.example.indexer.lucene.IngestStage;
 import com.example.indexer.lucene.LuceneWriter;
+import com.example.indexer.lucene.PhaseTimers;
 import com.example.indexer.model.IndexDocument;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.jspecify.annotations.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.RedisCallback;
@@ -14,10 +18,17 @@ import org.springframework.stereotype.Service;
 import tools.jackson.databind.ObjectMapper;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Distributed Redis Stream consumer using XREADGROUP + ACK + PEL claiming.
@@ -36,6 +47,7 @@ public class RedisConsumer {
 //    private RedisTemplate<String, String> redisTemplate;
 
     private final LuceneWriter luceneWriter;
+    private final PhaseTimers<IngestStage> ingestTimers;
     private final ObjectMapper mapper = new ObjectMapper();
 
     // Config
@@ -43,11 +55,51 @@ public class RedisConsumer {
     private static final String GROUP = "indexer_group";
     private final String consumerName = "consumer-" + UUID.randomUUID().toString().substring(0, 8);
     private static final Duration BLOCK_MS = Duration.ofSeconds(5);
-    private static final int BATCH_SIZE = 20;
 
-    public RedisConsumer(StringRedisTemplate redisTemplate, LuceneWriter luceneWriter) {
+    // XREADGROUP COUNT: doubles while reads come back full (a backlog), shrinks back as it drains
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private int batchSize;
+
+    // Processed but not yet covered by a Lucene commit — acked only after commit succeeds
+    private final List<RecordId> awaitingCommit = new ArrayList<>();
+
+    // Bounded pool for concurrent analyze + IndexWriter.updateDocument
+    private final ExecutorService indexingPool;
+
+    // Stream reads, so the next batch is fetched while the current one is indexed
+    private final ExecutorService reader;
+
+    // Cleared by stop(): the loop finishes its batch, commits, acks and returns
+    private volatile boolean running = true;
+    private Thread consumerThread;
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(30);
+
+    public RedisConsumer(StringRedisTemplate redisTemplate,
+                         LuceneWriter luceneWriter,
+                         @Value("${indexer.workers:0}") int workers,
+                         @Value("${indexer.consumer.batch.min:20}") int minBatchSize,
+                         @Value("${indexer.consumer.batch.max:500}") int maxBatchSize) {
         this.redisTemplate = redisTemplate;
         this.luceneWriter = luceneWriter;
+        this.ingestTimers = luceneWriter.getIngestTimers();
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.batchSize = this.minBatchSize;
+        this.reader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "redis-reader-" + consumerName);
+            t.setDaemon(true);
+            return t;
+        });
+
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNum = new AtomicInteger();
+        this.indexingPool = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "indexer-worker-" + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("Indexing with {} worker threads", poolSize);
     }
 
     @PostConstruct
@@ -59,12 +111,39 @@ public class RedisConsumer {
         recoverPendingMessages();
 
         // Start main consumer thread
-        Thread t = new Thread(this::consumeLoop, "redis-consumer-" + consumerName);
-        t.setDaemon(false);
-        t.start();
+        consumerThread = new Thread(this::consumeLoop, "redis-consumer-" + consumerName);
+        consumerThread.setDaemon(false);
+        consumerThread.start();
         log.info("Started consumer thread {}", consumerName);
     }
 
+    /**
+     * Lets the loop drain rather than interrupting it mid-commit (an interrupt
+     * during Lucene I/O can close the index files): it returns within one
+     * blocking read plus the batch in hand, after committing and acking it.
+     * The pools go only after that, so nothing is submitted to a closed pool.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (consumerThread != null) {
+            consumerThread.join(STOP_TIMEOUT.toMillis());
+            if (consumerThread.isAlive()) {
+                log.warn("Consumer {} did not stop within {}, interrupting it", consumerName, STOP_TIMEOUT);
+                consumerThread.interrupt();
+                consumerThread.join(BLOCK_MS.toMillis());
+            }
+        }
+
+        // a prefetch still in flight is abandoned; anything it claimed is recovered from the PEL on restart
+        reader.shutdownNow();
+        indexingPool.shutdown();
+        if (!indexingPool.awaitTermination(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Indexing workers still busy after {}", STOP_TIMEOUT);
+        }
+        reader.awaitTermination(BLOCK_MS.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
     private void ensureGroupExists() {
         try {
             // createGroup will throw if group exists; catch and ignore
@@ -118,10 +197,9 @@ public class RedisConsumer {
                     break;
                 }
 
-                int docCount = 0;
+                List<MapRecord<String, Object, Object>> records = new ArrayList<>();
 
                 for (Object entry : messages) {
-                    docCount++;
                     @SuppressWarnings("unchecked")
                     List<Object> msg = (List<Object>) entry;
 
@@ -130,18 +208,13 @@ public class RedisConsumer {
                     List<Object> fields = (List<Object>) msg.get(1);
 
                     // Convert Redis fields → Map
-                    MapRecord<String, Object, Object> record =
-                            StreamRecords.<String, Object, Object>mapBacked(toMap(fields))
-                                    .withId(RecordId.of(id));
-
-                    try {
-                        processRecord(record, docCount);
-                        redisTemplate.opsForStream().acknowledge(STREAM, GROUP, record.getId());
-                    } catch (Exception e) {
-                        log.error("Failed processing recovered msg {}", id, e);
-                    }
+                    records.add(StreamRecords.<String, Object, Object>mapBacked(toMap(fields))
+                            .withId(RecordId.of(id)));
                 }
 
+                processBatch(records);
+                commitAndAck();
+
                 startId = new String((byte[]) result.get(0));
             }
 
@@ -158,70 +231,195 @@ public class RedisConsumer {
     }
 
     /**
-     * Main consumer loop: XREADGROUP with blocking and batch size.
+     * Main consumer loop: XREADGROUP with blocking and an adaptive batch size.
+     * Pipelined: as soon as a batch arrives the next read is issued, so it is
+     * in flight while this batch indexes and is usually waiting when it is done.
      */
     private void consumeLoop() {
         log.info("Consumer {} joining group {} on stream {}", consumerName, GROUP, STREAM);
 
         Consumer consumer = Consumer.from(GROUP, consumerName);
-        StreamReadOptions options = StreamReadOptions.empty()
-                .count(BATCH_SIZE)
-                .block(BLOCK_MS);
 
         // We read last-consumed so consumer group gives us messages assigned to this consumer
         StreamOffset<String> offset = StreamOffset.create(STREAM, ReadOffset.lastConsumed());
 
-        while (true) {
+        CompletableFuture<List<@NonNull MapRecord<String, Object, Object>>> next = null;
+        while (running) {
             try {
-                List<@NonNull MapRecord<String, Object, Object>> msgs =
-                        redisTemplate.opsForStream().read(consumer, options, offset);
+                if (next == null) {
+                    // Don't block past the commit deadline while a batch is open
+                    next = read(consumer, offset, awaitingCommit.isEmpty()
+                            ? BLOCK_MS
+                            : min(BLOCK_MS, luceneWriter.getMaxCommitLatency()));
+                }
+                // a failed read is reissued; a prefetch survives a failed batch
+                CompletableFuture<List<@NonNull MapRecord<String, Object, Object>>> current = next;
+                next = null;
+                List<@NonNull MapRecord<String, Object, Object>> msgs = current.join();
 
                 if (msgs == null || msgs.isEmpty()) {
-                    // no messages this cycle
+                    // stream is idle — flush whatever is open
+                    commitAndAck();
                     continue;
                 }
 
-                int docCount = 0;
-
-                for (@NonNull MapRecord<String, Object, Object> msg : msgs) {
-                    try {
-                        docCount++;
-                        processRecord(msg, docCount);
-                        // Acknowledge after successful indexing
-                        redisTemplate.opsForStream().acknowledge(STREAM, GROUP, msg.getId());
-                    } catch (Exception e) {
-                        log.error("Failed processing message id {}: {} — will not ack to allow retry", msg.getId(), e.getMessage(), e);
-                        // Do NOT ack: leave it pending so claim/retry can pick it up
-                    }
+                adaptBatchSize(msgs.size());
+                // this batch opens a commit window: the prefetch must not block past its deadline.
+                // No prefetch once stopping: the reader is about to be shut down.
+                if (running) {
+                    next = read(consumer, offset, min(BLOCK_MS, luceneWriter.getMaxCommitLatency()));
+                }
+
+                processBatch(msgs);
+
+                if (luceneWriter.isCommitDue()) {
+                    commitAndAck();
                 }
             } catch (Exception e) {
+                if (!running) break;
                 log.error("Error in consumer loop: {}", e.getMessage(), e);
                 try {
                     Thread.sleep(2000);
-                } catch (InterruptedException ignored) {}
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
         }
+
+        // what was indexed before stopping is committed and acked, not redelivered
+        commitAndAck();
+        log.info("Consumer {} stopped", consumerName);
+    }
+
+    private CompletableFuture<List<@NonNull MapRecord<String, Object, Object>>> read(
+            Consumer consumer, StreamOffset<String> offset, Duration block) {
+        StreamReadOptions options = StreamReadOptions.empty()
+                .count(batchSize)
+                .block(block);
+        // blocking reads run on a dedicated connection; acks and commits are not held up behind them
+        return CompletableFuture.supplyAsync(
+                () -> redisTemplate.opsForStream().read(consumer, options, offset), reader);
     }
 
     /**
-     * Convert message → IndexDocument → idempotent lucene updateDocument
+     * A full read means at least as much again is waiting: double the next
+     * one. A short read means the backlog is gone: fall back towards what
+     * actually arrived.
      */
-    private void processRecord(@NonNull MapRecord<String, Object, Object> msg, int docCount) throws Exception {
-        Object raw = msg.getValue().get("doc");
-        if (raw == null) {
-            log.warn("Message {} has no 'doc' field, skipping", msg.getId());
-            // acknowledge to skip bad messages (optional)
-            redisTemplate.opsForStream().acknowledge(STREAM, GROUP, msg.getId());
+    private void adaptBatchSize(int received) {
+        if (received >= batchSize) {
+            batchSize = Math.min(maxBatchSize, batchSize * 2);
+        } else {
+            batchSize = Math.max(minBatchSize, Math.max(received, batchSize / 2));
+        }
+    }
+
+    /**
+     * Group commit: one durable Lucene commit, then ack every message it covers
+     * with a single multi-id XACK.
+     * If the commit fails nothing is acked and the messages stay in the PEL.
+     */
+    private void commitAndAck() {
+        if (awaitingCommit.isEmpty()) {
             return;
         }
 
-        String json = raw.toString();
-        IndexDocument doc = mapper.readValue(json, IndexDocument.class);
+        try {
+            luceneWriter.commit();
+            long start = System.nanoTime();
+            redisTemplate.opsForStream().acknowledge(STREAM, GROUP, awaitingCommit.toArray(new RecordId[0]));
+            ingestTimers.record(IngestStage.ACK, start);
+        } catch (Exception e) {
+            log.error("Commit of {} docs failed — leaving them pending for retry: {}", awaitingCommit.size(), e.getMessage(), e);
+        } finally {
+            awaitingCommit.clear();
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /**
+     * Fan a read batch out to the indexing pool and wait for it.
+     * Messages for the same document id run in stream order on one worker so a
+     * newer version is never overwritten by an older one; different ids index
+     * concurrently. Only messages that indexed successfully join the commit batch.
+     */
+    private void processBatch(List<@NonNull MapRecord<String, Object, Object>> msgs) {
+        Map<String, List<PendingDoc>> byId = new LinkedHashMap<>();
+
+        for (@NonNull MapRecord<String, Object, Object> msg : msgs) {
+            try {
+                long start = System.nanoTime();
+                IndexDocument doc = parseRecord(msg);
+                ingestTimers.record(IngestStage.DESERIALIZE, start);
+                if (doc != null) {
+                    byId.computeIfAbsent(doc.getId(), k -> new ArrayList<>()).add(new PendingDoc(msg.getId(), doc));
+                }
+            } catch (Exception e) {
+                log.error("Failed parsing message id {}: {} — will not ack to allow retry", msg.getId(), e.getMessage(), e);
+            }
+        }
+
+        // one coalesced embedding call for the whole batch instead of one per worker
+        List<IndexDocument> docs = new ArrayList<>(msgs.size());
+        for (List<PendingDoc> group : byId.values()) {
+            for (PendingDoc p : group) {
+                docs.add(p.doc());
+            }
+        }
+        luceneWriter.prefetchEmbeddings(docs);
+
+        List<CompletableFuture<List<RecordId>>> futures = new ArrayList<>(byId.size());
+        for (List<PendingDoc> group : byId.values()) {
+            futures.add(CompletableFuture.supplyAsync(() -> indexInOrder(group), indexingPool));
+        }
+
+        for (CompletableFuture<List<RecordId>> f : futures) {
+            awaitingCommit.addAll(f.join());
+        }
+    }
 
-        log.info("Indexing doc {} id={} path={}", docCount, doc.getId(), doc.getPath());
+    /**
+     * @return ids of the messages that were indexed; stops at the first failure
+     * so later versions of the document are retried after it, not before.
+     */
+    private List<RecordId> indexInOrder(List<PendingDoc> group) {
+        List<RecordId> done = new ArrayList<>(group.size());
+        for (PendingDoc p : group) {
+            try {
+                log.debug("Indexing doc id={} path={}", p.doc().getId(), p.doc().getPath());
 
-        // idempotent update to avoid duplicates
-        luceneWriter.updateDocument(doc);
+                // idempotent update to avoid duplicates
+                luceneWriter.updateDocument(p.doc());
+                done.add(p.recordId());
+            } catch (Exception e) {
+                log.error("Failed processing message id {}: {} — will not ack to allow retry", p.recordId(), e.getMessage(), e);
+                // Do NOT ack: leave it pending so claim/retry can pick it up
+                break;
+            }
+        }
+        return done;
+    }
 
+    /**
+     * Convert message → IndexDocument. Messages without a 'doc' field are
+     * acked with the batch and return null.
+     */
+    private IndexDocument parseRecord(@NonNull MapRecord<String, Object, Object> msg) throws Exception {
+        Object raw = msg.getValue().get("doc");
+        if (raw == null) {
+            log.warn("Message {} has no 'doc' field, skipping", msg.getId());
+            // nothing to index or retry: skip it in the batch's XACK rather than a round-trip of its own
+            awaitingCommit.add(msg.getId());
+            return null;
+        }
+
+        String json = raw.toString();
+        return mapper.readValue(json, IndexDocument.class);
     }
+
+    private record PendingDoc(RecordId recordId, IndexDocument doc) {}
 }
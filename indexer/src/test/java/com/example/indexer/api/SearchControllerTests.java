@@ -0,0 +1,85 @@
+package com.example.indexer.api;
+
+import com.example.indexer.lucene.LuceneSearcher;
+import com.example.indexer.lucene.SearchCursor;
+import com.example.indexer.lucene.SearchMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class SearchControllerTests {
+
+	private LuceneSearcher searcher;
+	private MockMvc mvc;
+
+	@BeforeEach
+	void setUp() {
+		searcher = mock(LuceneSearcher.class);
+		mvc = MockMvcBuilders.standaloneSetup(new SearchController(searcher)).build();
+		// as shipped: embeddings off, lexical only
+		when(searcher.supports(SearchMode.LEXICAL)).thenReturn(true);
+	}
+
+	@Test
+	void malformedCursorIsABadRequest() throws Exception {
+		when(searcher.search(anyString(), anyInt(), eq("bogus"), any(), any(SearchMode.class), any(), any()))
+				.thenAnswer(inv -> SearchCursor.decode("bogus"));
+
+		mvc.perform(get("/api/search").param("q", "foo").param("cursor", "bogus"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void unknownModeIsABadRequest() throws Exception {
+		mvc.perform(get("/api/search").param("q", "foo").param("mode", "foo"))
+				.andExpect(status().isBadRequest());
+		verify(searcher, never()).search(anyString(), anyInt(), any(), any(), any(SearchMode.class), any(), any());
+	}
+
+	@Test
+	void vectorModesWithoutEmbeddingsAreABadRequest() throws Exception {
+		when(searcher.search(anyString(), anyInt(), any(), any(), any(SearchMode.class), any(), any()))
+				.thenReturn(new SearchPage(List.of(), null, 0, 20, false));
+
+		mvc.perform(get("/api/search").param("q", "foo").param("mode", "semantic"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/search").param("q", "foo").param("mode", "hybrid"))
+				.andExpect(status().isBadRequest());
+		verify(searcher, never()).search(anyString(), anyInt(), any(), any(), any(SearchMode.class), any(), any());
+
+		mvc.perform(get("/api/search").param("q", "foo").param("mode", "lexical"))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void nonPositivePageSizeIsABadRequest() throws Exception {
+		mvc.perform(get("/api/search").param("q", "foo").param("n", "0"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/search/regex").param("q", "foo").param("n", "-1"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void invalidRegexIsABadRequest() throws Exception {
+		when(searcher.regexSearch(eq("(unclosed"), anyInt(), any()))
+				.thenAnswer(inv -> Pattern.compile("(unclosed"));
+
+		mvc.perform(get("/api/search/regex").param("q", "(unclosed"))
+				.andExpect(status().isBadRequest());
+	}
+}
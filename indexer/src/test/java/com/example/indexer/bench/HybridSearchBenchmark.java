@@ -0,0 +1,142 @@
+package com.example.indexer.bench;
+
+import com.example.indexer.api.SearchPage;
+import com.example.indexer.bench.SyntheticCorpus.MethodQuery;
+import com.example.indexer.lucene.CodeChunker;
+import com.example.indexer.lucene.DefaultRankSignalExtractor;
+import com.example.indexer.lucene.LuceneSearcher;
+import com.example.indexer.lucene.LuceneWriter;
+import com.example.indexer.lucene.SearchAnalyzer;
+import com.example.indexer.lucene.SearchMode;
+import com.example.indexer.model.IndexDocument;
+import com.example.indexer.semantic.BatchingEmbedder;
+import com.example.indexer.semantic.HashingEmbeddingProvider;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Relevance and latency of lexical-only, vector-only and hybrid search on
+ * the synthetic corpus.
+ *
+ * Queries are natural-language forms of generated method names
+ * ("validate pet by vet id"); a file is relevant when it declares that
+ * method (validatePetByVetId). Every query is distinct, so the per-query
+ * candidate cache never serves a measured run.
+ *
+ * Run from indexer/:
+ *   ./mvnw -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.example.indexer.bench.HybridSearchBenchmark \
+ *       -Dexec.args="20000 200"
+ *
+ * args: docs, measured queries
+ */
+public class HybridSearchBenchmark {
+
+    private static final int TOP = 10;
+    private static final int WARMUP = 50;
+
+    public static void main(String[] args) throws Exception {
+        int docs = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int measured = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        List<IndexDocument> corpus = new SyntheticCorpus(42).generate(docs);
+        List<MethodQuery> queries = SyntheticCorpus.methodQueries(7);
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Path dir = Files.createTempDirectory("dcse-bench-");
+        try {
+            // in-memory embedding cache, no linger: nothing else to coalesce with
+            BatchingEmbedder embedder = new BatchingEmbedder(new HashingEmbeddingProvider(256), "", 64, 0, 4, 1, 1);
+            LuceneWriter writer = new LuceneWriter(new SearchAnalyzer(), new DefaultRankSignalExtractor(),
+                    new CodeChunker(60, 10, true), embedder, true, 60_000, "none", false,
+                    dir.toString(), 1, "id", 500, 1000, false);
+            for (IndexDocument doc : corpus) {
+                writer.updateDocument(doc);
+            }
+            writer.commit();
+
+            // result cache off; generous budgets so no run comes back partial
+            LuceneSearcher searcher = new LuceneSearcher(new SearchAnalyzer(), writer, 50, 0, 0,
+                    100_000, 8, 2000, 2000, 100, 200, 3, 2000, 60);
+
+            out.printf("%d docs, %d queries, top %d%n", docs, measured, TOP);
+            out.printf("%-9s %8s %8s %9s %9s %9s %8s%n",
+                    "mode", "MRR", "recall", "p50 ms", "p95 ms", "p99 ms", "partial");
+
+            for (SearchMode mode : SearchMode.values()) {
+                for (MethodQuery q : queries.subList(0, WARMUP)) {
+                    searcher.search(q.text(), TOP, null, null, mode, null, null);
+                }
+
+                double reciprocalRanks = 0;
+                double recall = 0;
+                int partial = 0;
+                long[] nanos = new long[measured];
+
+                List<MethodQuery> run = queries.subList(WARMUP, WARMUP + measured);
+                for (int i = 0; i < run.size(); i++) {
+                    MethodQuery q = run.get(i);
+                    Set<String> relevant = relevant(corpus, q.method());
+
+                    long start = System.nanoTime();
+                    SearchPage page = searcher.search(q.text(), TOP, null, null, mode, null, null);
+                    nanos[i] = System.nanoTime() - start;
+
+                    if (page.partial) partial++;
+                    int found = 0;
+                    for (int rank = 0; rank < page.results.size(); rank++) {
+                        if (relevant.contains(page.results.get(rank).getPath())) {
+                            if (found == 0) reciprocalRanks += 1.0 / (rank + 1);
+                            found++;
+                        }
+                    }
+                    recall += relevant.isEmpty() ? 1 : (double) found / Math.min(TOP, relevant.size());
+                }
+
+                Arrays.sort(nanos);
+                out.printf("%-9s %8.3f %8.3f %9.2f %9.2f %9.2f %8d%n",
+                        mode.name().toLowerCase(),
+                        reciprocalRanks / measured,
+                        recall / measured,
+                        percentile(nanos, 0.50),
+                        percentile(nanos, 0.95),
+                        percentile(nanos, 0.99),
+                        partial);
+            }
+
+            searcher.shutdown();
+            writer.close();
+        } finally {
+            System.setOut(out);
+            try (var paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static Set<String> relevant(List<IndexDocument> corpus, String method) {
+        Set<String> paths = new HashSet<>();
+        String declaration = " " + method + "(";
+        for (IndexDocument doc : corpus) {
+            if (doc.getCode().contains(declaration)) {
+                paths.add(doc.getPath());
+            }
+        }
+        return paths;
+    }
+
+    private static double percentile(long[] sortedNanos, double p) {
+        int i = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(i, sortedNanos.length - 1))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.indexer.bench;
+
+import com.example.indexer.lucene.CodeChunker;
+import com.example.indexer.lucene.DefaultRankSignalExtractor;
+import com.example.indexer.lucene.LuceneWriter;
+import com.example.indexer.lucene.SearchAnalyzer;
+import com.example.indexer.model.IndexDocument;
+import com.example.indexer.semantic.BatchingEmbedder;
+import com.example.indexer.semantic.HashingEmbeddingProvider;
+
+import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ingest throughput vs. worker count, mirroring RedisConsumer: each read
+ * batch is fanned out to the pool, joined, and group-committed.
+ *
+ * Run from indexer/:
+ *   ./mvnw -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.example.indexer.bench.IndexingThroughputBenchmark \
+ *       -Dexec.args="20000 20 1,2,4,8"
+ *
+ * args: docs, read batch size, comma-separated worker counts
+ */
+public class IndexingThroughputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int docs = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int readBatch = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String[] workerCounts = (args.length > 2 ? args[2] : "1,2,4,8").split(",");
+
+        List<IndexDocument> corpus = new SyntheticCorpus(42).generate(docs);
+
+        // keep the table apart from the writer's log lines
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        out.printf("%-8s %12s %12s%n", "workers", "docs/sec", "commits/sec");
+        for (String w : workerCounts) {
+            int workers = Integer.parseInt(w.trim());
+            Path dir = Files.createTempDirectory("dcse-bench-");
+            try {
+                // in-memory embedding cache, no linger: nothing else to coalesce with
+                BatchingEmbedder embedder = new BatchingEmbedder(new HashingEmbeddingProvider(256), "", 64, 0, 4, 1, 1);
+                LuceneWriter writer = new LuceneWriter(new SearchAnalyzer(), new DefaultRankSignalExtractor(),
+                        new CodeChunker(60, 10, true), embedder, true, 60_000, "none", false,
+                        dir.toString(), 1, "id", 500, 1000, false);
+                ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < corpus.size(); i += readBatch) {
+                    List<IndexDocument> batch = corpus.subList(i, Math.min(corpus.size(), i + readBatch));
+                    writer.prefetchEmbeddings(batch);
+
+                    List<CompletableFuture<Void>> futures = new ArrayList<>();
+                    for (IndexDocument doc : batch) {
+                        futures.add(CompletableFuture.runAsync(() -> {
+                            try {
+                                writer.updateDocument(doc);
+                            } catch (Exception e) {
+                                throw new RuntimeException(e);
+                            }
+                        }, pool));
+                    }
+                    futures.forEach(CompletableFuture::join);
+
+                    if (writer.isCommitDue()) {
+                        writer.commit();
+                    }
+                }
+                writer.commit();
+                double sec = (System.nanoTime() - start) / 1_000_000_000.0;
+
+                out.printf("%-8d %12.0f %12.2f%n", workers, docs / sec,
+                        writer.getStats().commitsPerSecond());
+
+                pool.shutdown();
+                writer.close();
+            } finally {
+                try (var paths = Files.walk(dir)) {
+                    paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+        System.setOut(out);
+    }
+}
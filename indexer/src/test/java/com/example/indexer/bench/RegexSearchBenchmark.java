@@ -0,0 +1,159 @@
+package com.example.indexer.bench;
+
+import com.example.indexer.api.SearchPage;
+import com.example.indexer.api.SearchResult;
+import com.example.indexer.lucene.CodeChunker;
+import com.example.indexer.lucene.DefaultRankSignalExtractor;
+import com.example.indexer.lucene.LuceneSearcher;
+import com.example.indexer.lucene.LuceneWriter;
+import com.example.indexer.lucene.SearchAnalyzer;
+import com.example.indexer.model.IndexDocument;
+import com.example.indexer.semantic.BatchingEmbedder;
+import com.example.indexer.semantic.HashingEmbeddingProvider;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * /api/search/regex (trigram prefilter, then verification) against a naive
+ * scan that runs the same pattern over every chunk's stored code. Both
+ * report every matching file; the file sets must agree.
+ *
+ * Run from indexer/:
+ *   ./mvnw -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.example.indexer.bench.RegexSearchBenchmark \
+ *       -Dexec.args="20000 20"
+ *
+ * args: docs, measured runs per pattern
+ */
+public class RegexSearchBenchmark {
+
+    private static final List<String> PATTERNS = List.of(
+            "findOwnerByPetId\\(",
+            "(save|delete)InvoiceBy\\w+Id",
+            "@GetMapping\\(\"/\\{visitId",
+            "class \\w+Controller1\\d\\d\\b",
+            "findBy\\w+Id",
+            "\\w+_repository\\.\\w+All");
+
+    private static final int ALL = Integer.MAX_VALUE;
+
+    public static void main(String[] args) throws Exception {
+        int docs = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        List<IndexDocument> corpus = new SyntheticCorpus(42).generate(docs);
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Path dir = Files.createTempDirectory("dcse-bench-");
+        try {
+            BatchingEmbedder embedder = new BatchingEmbedder(new HashingEmbeddingProvider(256), "", 64, 0, 4, 1, 1);
+            LuceneWriter writer = new LuceneWriter(new SearchAnalyzer(), new DefaultRankSignalExtractor(),
+                    new CodeChunker(60, 10, true), embedder, false, 60_000, "none", false,
+                    dir.toString(), 1, "id", 500, 1000, false);
+            for (IndexDocument doc : corpus) {
+                writer.updateDocument(doc);
+            }
+            writer.commit();
+
+            // generous budget: every run must finish
+            LuceneSearcher searcher = new LuceneSearcher(new SearchAnalyzer(), writer, 50, 0, 0,
+                    100_000, 8, 60_000, 60_000, 100, 200, 3, 2000, 60);
+
+            try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(dir))) {
+                out.printf("%d docs, %d chunks, %d runs per pattern%n", docs,
+                        reader.docFreq(new Term("doc_type", "chunk")), runs);
+                out.printf("%-34s %7s %12s %12s %9s%n", "pattern", "files", "trigram ms", "scan ms", "speedup");
+
+                for (String regex : PATTERNS) {
+                    Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
+                    Set<String> indexed = paths(searcher.regexSearch(regex, ALL, null));
+                    Set<String> scanned = scan(reader, pattern);
+                    if (!indexed.equals(scanned)) {
+                        throw new IllegalStateException(regex + ": trigram search found " + indexed.size()
+                                + " files, scan found " + scanned.size());
+                    }
+
+                    long[] trigram = new long[runs];
+                    long[] scan = new long[runs];
+                    for (int i = 0; i < runs; i++) {
+                        long start = System.nanoTime();
+                        searcher.regexSearch(regex, ALL, null);
+                        trigram[i] = System.nanoTime() - start;
+
+                        start = System.nanoTime();
+                        scan(reader, pattern);
+                        scan[i] = System.nanoTime() - start;
+                    }
+                    double t = median(trigram);
+                    double s = median(scan);
+                    out.printf("%-34s %7d %12.2f %12.2f %8.1fx%n", regex, indexed.size(), t, s, s / t);
+                }
+            }
+
+            searcher.shutdown();
+            writer.close();
+        } finally {
+            System.setOut(out);
+            try (var paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /** every live chunk's stored code through the pattern; files by path */
+    private static Set<String> scan(DirectoryReader reader, Pattern pattern) throws IOException {
+        Set<String> files = new HashSet<>();
+        for (LeafReaderContext leaf : reader.leaves()) {
+            PostingsEnum chunks = leaf.reader().postings(new Term("doc_type", "chunk"));
+            if (chunks == null) continue;
+            Bits live = leaf.reader().getLiveDocs();
+            StoredFields stored = leaf.reader().storedFields();
+            SortedDocValues paths = DocValues.getSorted(leaf.reader(), "path");
+
+            for (int doc = chunks.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = chunks.nextDoc()) {
+                if (live != null && !live.get(doc)) continue;
+                String code = stored.document(doc, Set.of("code")).get("code");
+                if (code != null && pattern.matcher(code).find() && paths.advanceExact(doc)) {
+                    files.add(paths.lookupOrd(paths.ordValue()).utf8ToString());
+                }
+            }
+        }
+        return files;
+    }
+
+    private static Set<String> paths(SearchPage page) {
+        Set<String> paths = new HashSet<>();
+        for (SearchResult r : page.results) {
+            paths.add(r.getPath());
+        }
+        return paths;
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000.0;
+    }
+}
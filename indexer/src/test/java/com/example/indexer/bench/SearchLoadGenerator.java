@@ -0,0 +1,284 @@
+package com.example.indexer.bench;
+
+import com.example.indexer.DemoApplication;
+import com.example.indexer.bench.SyntheticCorpus.MethodQuery;
+import com.example.indexer.lucene.LuceneWriter;
+import com.example.indexer.lucene.QueryIntent;
+import com.example.indexer.model.IndexDocument;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load against /api/search. Requests leave on a fixed schedule at
+ * the target rate whether or not earlier ones have returned, and each latency
+ * is measured from the request's scheduled send time. A stalled server so
+ * shows up as the queueing delay its users would see, not as fewer and
+ * faster samples (coordinated omission). Latencies are recorded in
+ * HdrHistograms per query intent, classified by QueryIntent.detect exactly
+ * as the searcher does.
+ *
+ * Without --url an indexer is started in-process on a random port, over a
+ * temporary index of the synthetic corpus: no Redis, no crawler. Without
+ * --log the replayed log is synthetic (identifiers, natural-language method
+ * descriptions, endpoint and repo queries).
+ *
+ * Query log: JSON lines such as {"q": "find owner by pet id", "mode": "hybrid", "n": 20};
+ * mode (default lexical) and n (default 20) are optional. The log is
+ * replayed in order and from the start again when it runs out.
+ *
+ * Run from indexer/ (or benchmarks/load_test.sh with the same options):
+ *   ./mvnw -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.example.indexer.bench.SearchLoadGenerator \
+ *       -Dexec.args="--qps 200 --duration 30"
+ *
+ * options: --url, --log, --mode (overrides the log), --qps (200),
+ *          --duration seconds (30), --warmup seconds (10), --docs (20000)
+ */
+public class SearchLoadGenerator {
+
+    private static final int SYNTHETIC_LOG_SIZE = 5_000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    record LoggedQuery(String q, String mode, int n, QueryIntent intent) {}
+
+    /** one histogram and its counters; values in microseconds */
+    static final class IntentStats {
+        final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        final LongAdder errors = new LongAdder();
+        final LongAdder partial = new LongAdder();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        double qps = Double.parseDouble(options.getOrDefault("qps", "200"));
+        long durationSec = Long.parseLong(options.getOrDefault("duration", "30"));
+        long warmupSec = Long.parseLong(options.getOrDefault("warmup", "10"));
+        int docs = Integer.parseInt(options.getOrDefault("docs", "20000"));
+
+        List<LoggedQuery> log = options.containsKey("log")
+                ? readLog(Path.of(options.get("log")), options.get("mode"))
+                : syntheticLog(7, options.getOrDefault("mode", "lexical"));
+        if (log.isEmpty()) throw new IllegalArgumentException("Query log has no queries");
+
+        Path dir = null;
+        ConfigurableApplicationContext indexer = null;
+        String url = options.get("url");
+        try {
+            if (url == null) {
+                dir = Files.createTempDirectory("dcse-load-");
+                System.out.printf("Indexing %d synthetic docs into an in-process indexer...%n", docs);
+                indexer = startIndexer(dir, docs);
+                url = "http://localhost:" + indexer.getEnvironment().getProperty("local.server.port");
+            }
+
+            System.out.printf("%s: %d queries in the log, %.0f req/s for %ds after %ds warmup%n",
+                    url, log.size(), qps, durationSec, warmupSec);
+            Map<QueryIntent, IntentStats> stats = run(url, log, qps, warmupSec, durationSec);
+            report(stats, durationSec);
+        } finally {
+            if (indexer != null) indexer.close();
+            if (dir != null) {
+                try (var paths = Files.walk(dir)) {
+                    paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static Map<QueryIntent, IntentStats> run(String url, List<LoggedQuery> log, double qps,
+                                                      long warmupSec, long durationSec) throws InterruptedException {
+        Map<QueryIntent, IntentStats> stats = new EnumMap<>(QueryIntent.class);
+        for (QueryIntent intent : QueryIntent.values()) {
+            stats.put(intent, new IntentStats());
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / qps);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSec);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSec);
+        long maxSendLag = 0;
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) break;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                maxSendLag = Math.max(maxSendLag, -wait);
+            }
+
+            LoggedQuery q = log.get((int) (i % log.size()));
+            boolean measured = intended >= measureFrom;
+            IntentStats s = stats.get(q.intent());
+            inFlight.incrementAndGet();
+            client.sendAsync(request(url, q), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        // from the scheduled send, not the actual one: a late send is latency too
+                        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                        if (measured) {
+                            s.latency.recordValue(micros);
+                            if (error != null || response.statusCode() != 200) {
+                                s.errors.increment();
+                            } else if (response.body().contains("\"partial\":true")) {
+                                s.partial.increment();
+                            }
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+
+        long drainUntil = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        if (maxSendLag > TimeUnit.MILLISECONDS.toNanos(10)) {
+            System.out.printf("warning: sends ran up to %d ms behind schedule (client-side saturation)%n",
+                    TimeUnit.NANOSECONDS.toMillis(maxSendLag));
+        }
+        return stats;
+    }
+
+    private static HttpRequest request(String url, LoggedQuery q) {
+        String uri = url + "/api/search?q=" + URLEncoder.encode(q.q(), StandardCharsets.UTF_8)
+                + "&n=" + q.n() + "&mode=" + q.mode();
+        return HttpRequest.newBuilder(URI.create(uri)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private static void report(Map<QueryIntent, IntentStats> stats, long durationSec) {
+        System.out.printf("%-9s %9s %7s %8s %9s %9s %9s %9s %9s%n",
+                "intent", "requests", "errors", "partial", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram all = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+        long errors = 0;
+        long partial = 0;
+        for (Map.Entry<QueryIntent, IntentStats> e : stats.entrySet()) {
+            IntentStats s = e.getValue();
+            all.add(s.latency);
+            errors += s.errors.sum();
+            partial += s.partial.sum();
+            row(e.getKey().name(), s.latency, s.errors.sum(), s.partial.sum(), durationSec);
+        }
+        row("ALL", all, errors, partial, durationSec);
+    }
+
+    private static void row(String name, Histogram h, long errors, long partial, long durationSec) {
+        long n = h.getTotalCount();
+        System.out.printf("%-9s %9d %7d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n", name, n, errors, partial,
+                (double) (n - errors) / durationSec,
+                ms(h, 50), ms(h, 99), ms(h, 99.9), n == 0 ? 0 : h.getMaxValue() / 1000.0);
+    }
+
+    private static double ms(Histogram h, double percentile) {
+        return h.getTotalCount() == 0 ? 0 : h.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * The indexer as deployed minus Redis: a random port and a fresh index
+     * and embedding cache under dir, filled with the synthetic corpus.
+     */
+    private static ConfigurableApplicationContext startIndexer(Path dir, int docs) throws Exception {
+        // command-line arguments, so they win over application.properties
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class).run(
+                "--server.port=0",
+                "--feature.redis.enabled=false",
+                "--indexer.index-dir=" + dir.resolve("index"),
+                "--indexer.embeddings.cache-dir=" + dir.resolve("embedding-cache"),
+                "--logging.level.root=WARN");
+
+        LuceneWriter writer = context.getBean(LuceneWriter.class);
+        List<IndexDocument> corpus = new SyntheticCorpus(42).generate(docs);
+
+        for (int i = 0; i < corpus.size(); i += 64) {
+            List<IndexDocument> batch = corpus.subList(i, Math.min(corpus.size(), i + 64));
+            writer.prefetchEmbeddings(batch);
+            for (IndexDocument doc : batch) {
+                writer.updateDocument(doc);
+            }
+        }
+        writer.commit();
+        return context;
+    }
+
+    private static List<LoggedQuery> readLog(Path path, String modeOverride) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<LoggedQuery> log = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            if (line.isBlank()) continue;
+            JsonNode node = mapper.readTree(line);
+            JsonNode q = node.get("q");
+            if (q == null || q.asString().isBlank()) continue;
+
+            String mode = modeOverride != null ? modeOverride
+                    : node.has("mode") ? node.get("mode").asString() : "lexical";
+            int n = node.has("n") ? node.get("n").asInt() : 20;
+            log.add(new LoggedQuery(q.asString(), mode, n, QueryIntent.detect(q.asString())));
+        }
+        return log;
+    }
+
+    /**
+     * Queries users of the synthetic corpus would type: mostly code lookups
+     * (method identifiers and their natural-language form), then endpoint
+     * and repo queries.
+     */
+    private static List<LoggedQuery> syntheticLog(long seed, String mode) {
+        Random random = new Random(seed);
+        List<MethodQuery> methods = SyntheticCorpus.methodQueries(seed);
+        List<LoggedQuery> log = new ArrayList<>(SYNTHETIC_LOG_SIZE);
+        for (int i = 0; i < SYNTHETIC_LOG_SIZE; i++) {
+            MethodQuery m = methods.get(random.nextInt(methods.size()));
+            // "find owner by pet id" -> owner, pet
+            String[] words = m.text().split(" ");
+            double kind = random.nextDouble();
+            String q = kind < 0.30 ? m.method()
+                    : kind < 0.60 ? m.text()
+                    : kind < 0.75 ? words[1] + " controller"
+                    : kind < 0.85 ? "@GetMapping " + words[3] + "Id"
+                    : "repo-" + random.nextInt(8);
+            log.add(new LoggedQuery(q, mode, 20, QueryIntent.detect(q)));
+        }
+        return log;
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.indexer.bench;
+
+import com.example.indexer.lucene.CodeChunker;
+import com.example.indexer.lucene.SearchAnalyzer;
+import com.example.indexer.model.IndexDocument;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-chunk analysis cost at ingest, before and after the code analyzer.
+ *
+ * symbols: the old path ran two regex passes over the chunk
+ * (non-identifiers to spaces, then keywords out) and tokenized the result
+ * with StandardTokenizer; now one streaming pass of CodeTokenizer and a
+ * keyword StopFilter reads the chunk directly. code: StandardTokenizer
+ * against the full camelCase-splitting chain, shown for the overall picture.
+ * The old chains run without synonyms, which only flatters them.
+ *
+ * Run from indexer/:
+ *   ./mvnw -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.example.indexer.bench.SymbolAnalysisBenchmark \
+ *       -Dexec.args="5000 5"
+ *
+ * args: docs, measured rounds
+ */
+public class SymbolAnalysisBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int docs = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        CodeChunker chunker = new CodeChunker(60, 10, true);
+        List<String> chunks = new ArrayList<>();
+        long chars = 0;
+        for (IndexDocument doc : new SyntheticCorpus(42).generate(docs)) {
+            for (CodeChunker.Chunk chunk : chunker.split(doc.getCode())) {
+                chunks.add(chunk.text());
+                chars += chunk.text().length();
+            }
+        }
+
+        Analyzer standard = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String field) {
+                Tokenizer tokenizer = new StandardTokenizer();
+                return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+            }
+        };
+        Analyzer indexing = new SearchAnalyzer().buildForIndexing();
+
+        System.out.printf("%d chunks, %.1f MB of source%n", chunks.size(), chars / 1e6);
+        System.out.printf("%-22s %10s %10s %12s%n", "field / chain", "us/chunk", "MB/s", "tokens");
+        for (int round = -2; round < rounds; round++) {
+            boolean report = round == rounds - 1;
+            run("symbols regex+standard", chunks, chars, report, text -> count(standard, "symbols", extractSymbols(text)));
+            run("symbols streaming", chunks, chars, report, text -> count(indexing, SearchAnalyzer.SYMBOLS, text));
+            run("code standard", chunks, chars, report, text -> count(standard, "code", text));
+            run("code word-delimiter", chunks, chars, report, text -> count(indexing, "code", text));
+        }
+    }
+
+    private interface Analysis {
+        long tokens(String text) throws IOException;
+    }
+
+    private static void run(String name, List<String> chunks, long chars, boolean report, Analysis analysis)
+            throws IOException {
+        long tokens = 0;
+        long start = System.nanoTime();
+        for (String chunk : chunks) {
+            tokens += analysis.tokens(chunk);
+        }
+        long nanos = System.nanoTime() - start;
+        if (report) {
+            System.out.printf("%-22s %10.1f %10.1f %12d%n", name,
+                    nanos / 1e3 / chunks.size(), chars / 1e6 / (nanos / 1e9), tokens);
+        }
+    }
+
+    private static long count(Analyzer analyzer, String field, String text) throws IOException {
+        long n = 0;
+        try (TokenStream stream = analyzer.tokenStream(field, text)) {
+            stream.reset();
+            while (stream.incrementToken()) {
+                n++;
+            }
+            stream.end();
+        }
+        return n;
+    }
+
+    /** what LuceneWriter did before the code analyzer */
+    private static String extractSymbols(String code) {
+        return code
+                .replaceAll("[^a-zA-Z0-9_]", " ")
+                .replaceAll("\\b(class|public|private|void|return)\\b", "");
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.indexer.bench;
+
+import com.example.indexer.model.IndexDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of Java-ish source files shaped like what the
+ * crawler emits (controllers, services, tests, config), for benchmarks.
+ */
+public class SyntheticCorpus {
+
+    private static final String[] NOUNS = {
+            "Owner", "Pet", "Visit", "Vet", "Specialty", "Clinic", "Appointment",
+            "Invoice", "Customer", "Order", "Payment", "Account", "Report", "User"
+    };
+    private static final String[] VERBS = {
+            "find", "save", "delete", "update", "list", "load", "validate", "create"
+    };
+    private static final String[] KINDS = {
+            "Controller", "Service", "Repository", "Mapper", "Tests", "Config"
+    };
+
+    /** natural-language form of a method the corpus can declare, e.g. "validate pet by vet id" */
+    public record MethodQuery(String text, String method) {}
+
+    private final Random random;
+
+    public SyntheticCorpus(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public List<IndexDocument> generate(int count) {
+        List<IndexDocument> docs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            docs.add(document(i));
+        }
+        return docs;
+    }
+
+    public IndexDocument document(int n) {
+        String noun = pick(NOUNS);
+        String kind = pick(KINDS);
+        String repo = "repo-" + (n % 8);
+        String dir = kind.equals("Tests") ? "src/test/java/" : "src/main/java/";
+        String path = "/" + repo + "/" + dir + "com/example/" + noun.toLowerCase() + "/" + noun + kind + n + ".java";
+
+        String code = source(noun, kind, n);
+
+        IndexDocument doc = new IndexDocument();
+        doc.setId(path);
+        doc.setPath(path);
+        doc.setRepo(repo);
+        doc.setLang(".java");
+        doc.setCode(code);
+        doc.setHash(Integer.toHexString(code.hashCode()) + Integer.toHexString(n));
+        return doc;
+    }
+
+    private String source(String noun, String kind, int n) {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("/*\n * Copyright 2024 the original author or authors.\n */\n");
+        sb.append("package com.example.").append(noun.toLowerCase()).append(";\n\n");
+        sb.append("import java.util.List;\nimport java.util.Optional;\n\n");
+
+        boolean controller = kind.equals("Controller");
+        if (controller) {
+            sb.append("@RestController\n@RequestMapping(\"/api/").append(noun.toLowerCase()).append("s\")\n");
+        }
+        sb.append("public class ").append(noun).append(kind).append(n).append(" {\n\n");
+
+        int methods = 3 + random.nextInt(10);
+        for (int m = 0; m < methods; m++) {
+            String verb = pick(VERBS);
+            String other = pick(NOUNS);
+            String method = verb + noun + "By" + other + "Id";
+
+            if (controller) {
+                sb.append("    @GetMapping(\"/{").append(other.toLowerCase()).append("Id}\")\n");
+            }
+            sb.append("    public Optional<").append(noun).append("> ").append(method)
+                    .append("(long ").append(other.toLowerCase()).append("Id) {\n");
+            sb.append("        List<").append(noun).append("> items = ").append(noun.toLowerCase())
+                    .append("_repository.").append(verb).append("All();\n");
+            sb.append("        return items.stream().filter(x -> x.get").append(other)
+                    .append("Id() == ").append(other.toLowerCase()).append("Id).findFirst();\n");
+            sb.append("    }\n\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /** every verb/noun/noun method the corpus can declare, in a fixed shuffled order */
+    public static List<MethodQuery> methodQueries(long seed) {
+        List<MethodQuery> all = new ArrayList<>();
+        for (String verb : VERBS) {
+            for (String noun : NOUNS) {
+                for (String other : NOUNS) {
+                    all.add(new MethodQuery(
+                            verb + " " + noun.toLowerCase() + " by " + other.toLowerCase() + " id",
+                            verb + noun + "By" + other + "Id"));
+                }
+            }
+        }
+        Collections.shuffle(all, new Random(seed));
+        return all;
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
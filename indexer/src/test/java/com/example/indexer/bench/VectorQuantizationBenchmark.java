@@ -0,0 +1,287 @@
+package com.example.indexer.bench;
+
+import com.example.indexer.api.SearchPage;
+import com.example.indexer.api.SearchResult;
+import com.example.indexer.bench.SyntheticCorpus.MethodQuery;
+import com.example.indexer.lucene.CodeChunker;
+import com.example.indexer.lucene.DefaultRankSignalExtractor;
+import com.example.indexer.lucene.LuceneSearcher;
+import com.example.indexer.lucene.LuceneWriter;
+import com.example.indexer.lucene.SearchAnalyzer;
+import com.example.indexer.lucene.SearchMode;
+import com.example.indexer.model.IndexDocument;
+import com.example.indexer.semantic.BatchingEmbedder;
+import com.example.indexer.semantic.HashingEmbeddingProvider;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Float32 against int8 scalar-quantized vector storage on the synthetic
+ * corpus: index size, memory and recall@10 of semantic search, with the
+ * int8 graph hits rescored at several oversampling factors.
+ *
+ *  - index MB: whole index on disk (int8 keeps the floats too, for rescoring and merges)
+ *  - searched MB: graph plus the vectors the graph search compares (.vex + .veq or .vec)
+ *  - RSS MB / file MB: resident memory of the process that ran the queries, and the
+ *    file-backed (mmapped index, jars) part of it; each run gets a fresh JVM. Rescoring
+ *    reads float vectors at random, and on an index this small readahead makes most of
+ *    .vec resident anyway; searched MB is what must stay hot once the index outgrows RAM
+ *  - recall@10: overlap of the top 10 with the float32 top 10 for the same query
+ *
+ * Run from indexer/:
+ *   ./mvnw -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.example.indexer.bench.VectorQuantizationBenchmark \
+ *       -Dexec.args="20000 500"
+ *
+ * args: docs, measured queries
+ */
+public class VectorQuantizationBenchmark {
+
+    private static final int TOP = 10;
+    private static final int NUM_CANDIDATES = 100;
+    private static final int WARMUP = 50;
+    private static final int[] OVERSAMPLES = {1, 3, 5};
+
+    private record Run(List<Set<String>> tops, long[] nanos, long rssKb, long fileKb) {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--query")) {
+            queryAndExit(args);
+            return;
+        }
+        int docs = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int measured = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        List<IndexDocument> corpus = new SyntheticCorpus(42).generate(docs);
+        measured = Math.min(measured, SyntheticCorpus.methodQueries(7).size() - WARMUP);
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Path root = Files.createTempDirectory("dcse-bench-");
+        try {
+            Path floatDir = root.resolve("float32");
+            Path int8Dir = root.resolve("int8");
+            build(corpus, floatDir, "none");
+            build(corpus, int8Dir, "int8");
+
+            out.printf("%d docs, %d queries, top %d, numCandidates %d%n", docs, measured, TOP, NUM_CANDIDATES);
+            out.printf("%-12s %9s %11s %8s %8s %10s %8s %8s%n",
+                    "vectors", "index MB", "searched MB", "RSS MB", "file MB", "recall@10", "p50 ms", "p99 ms");
+
+            Run exact = inChildJvm(root, floatDir, "none", 1, measured);
+            report(out, "float32", floatDir, ".vec", exact, exact);
+
+            for (int oversample : OVERSAMPLES) {
+                Run run = inChildJvm(root, int8Dir, "int8", oversample, measured);
+                report(out, "int8 x" + oversample, int8Dir, ".veq", run, exact);
+            }
+        } finally {
+            System.setOut(out);
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void build(List<IndexDocument> corpus, Path dir, String quantization) throws IOException {
+        LuceneWriter writer = writer(dir, quantization);
+        for (IndexDocument doc : corpus) {
+            writer.updateDocument(doc);
+        }
+        writer.close();
+    }
+
+    private static LuceneWriter writer(Path dir, String quantization) throws IOException {
+        // in-memory embedding cache, no linger: nothing else to coalesce with
+        BatchingEmbedder embedder = new BatchingEmbedder(new HashingEmbeddingProvider(256), "", 64, 0, 4, 1, 1);
+        return new LuceneWriter(new SearchAnalyzer(), new DefaultRankSignalExtractor(),
+                new CodeChunker(60, 10, true), embedder, true, 60_000, quantization, false,
+                dir.toString(), 1, "id", 500, 1000, false);
+    }
+
+    /** runs the queries in a fresh JVM, so its RSS holds this index only */
+    private static Run inChildJvm(Path root, Path dir, String quantization, int oversample, int measured)
+            throws Exception {
+        Path results = Files.createTempFile(root, "run-", ".txt");
+        Process child = new ProcessBuilder(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-Xmx512m", "-cp", classPath(),
+                VectorQuantizationBenchmark.class.getName(), "--query",
+                dir.toString(), quantization, String.valueOf(oversample), String.valueOf(measured),
+                results.toString())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (child.waitFor() != 0) {
+            throw new IllegalStateException("query run for " + dir + " exited with " + child.exitValue());
+        }
+
+        List<String> lines = Files.readAllLines(results);
+        String[] memory = lines.get(0).split(" ");
+        long[] nanos = Arrays.stream(lines.get(1).split(",")).mapToLong(Long::parseLong).toArray();
+        List<Set<String>> tops = new ArrayList<>();
+        for (String line : lines.subList(2, lines.size())) {
+            tops.add(line.isEmpty() ? Set.of() : Set.of(line.split("\t")));
+        }
+        return new Run(tops, nanos, Long.parseLong(memory[0]), Long.parseLong(memory[1]));
+    }
+
+    /** child side: args --query dir quantization oversample measured resultsFile */
+    private static void queryAndExit(String[] args) throws Exception {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        int measured = Integer.parseInt(args[4]);
+        List<MethodQuery> all = SyntheticCorpus.methodQueries(7);
+
+        Run run = query(Path.of(args[1]), args[2], Integer.parseInt(args[3]),
+                all.subList(0, WARMUP), all.subList(WARMUP, WARMUP + measured));
+
+        List<String> lines = new ArrayList<>();
+        lines.add(run.rssKb() + " " + run.fileKb());
+        lines.add(String.join(",", Arrays.stream(run.nanos()).mapToObj(String::valueOf).toList()));
+        for (Set<String> top : run.tops()) {
+            lines.add(String.join("\t", top));
+        }
+        Files.write(Path.of(args[5]), lines);
+        // no waiting on lingering pool threads
+        System.exit(0);
+    }
+
+    private static Run query(Path dir, String quantization, int oversample,
+                             List<MethodQuery> warmup, List<MethodQuery> queries) throws Exception {
+        LuceneWriter writer = writer(dir, quantization);
+        // result cache off, single-threaded, generous budgets so no run comes back partial
+        LuceneSearcher searcher = new LuceneSearcher(new SearchAnalyzer(), writer, 50, 0, 1,
+                100_000, 8, 2000, 2000, TOP, NUM_CANDIDATES, oversample, 2000, 60);
+
+        for (MethodQuery q : warmup) {
+            searcher.search(q.text(), TOP, null, null, SearchMode.SEMANTIC, TOP, NUM_CANDIDATES);
+        }
+
+        List<Set<String>> tops = new ArrayList<>(queries.size());
+        long[] nanos = new long[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            SearchPage page = searcher.search(queries.get(i).text(), TOP, null, null,
+                    SearchMode.SEMANTIC, TOP, NUM_CANDIDATES);
+            nanos[i] = System.nanoTime() - start;
+
+            Set<String> top = new HashSet<>();
+            for (SearchResult result : page.results) {
+                top.add(result.getPath());
+            }
+            tops.add(top);
+        }
+        long rssKb = procStatusKb("VmRSS");
+        long fileKb = procStatusKb("RssFile");
+
+        searcher.shutdown();
+        writer.close();
+        Arrays.sort(nanos);
+        return new Run(tops, nanos, rssKb, fileKb);
+    }
+
+    private static void report(PrintStream out, String name, Path dir, String searchedVectors,
+                               Run run, Run exact) throws IOException {
+        Map<String, Long> bytes = bytesByExtension(dir);
+        long total = bytes.values().stream().mapToLong(Long::longValue).sum();
+        long searched = bytes.getOrDefault(".vex", 0L) + bytes.getOrDefault(searchedVectors, 0L);
+
+        double recall = 0;
+        for (int i = 0; i < run.tops().size(); i++) {
+            Set<String> expected = exact.tops().get(i);
+            if (expected.isEmpty()) {
+                recall += 1;
+                continue;
+            }
+            long found = run.tops().get(i).stream().filter(expected::contains).count();
+            recall += (double) found / expected.size();
+        }
+
+        out.printf("%-12s %9.1f %11.1f %8.1f %8.1f %10.3f %8.2f %8.2f%n",
+                name,
+                total / 1048576.0,
+                searched / 1048576.0,
+                run.rssKb() / 1024.0,
+                run.fileKb() / 1024.0,
+                recall / run.tops().size(),
+                percentile(run.nanos(), 0.50),
+                percentile(run.nanos(), 0.99));
+    }
+
+    /** file sizes of the latest commit by extension, looking inside compound files */
+    private static Map<String, Long> bytesByExtension(Path indexDir) throws IOException {
+        Map<String, Long> bytes = new HashMap<>();
+        try (Directory dir = FSDirectory.open(indexDir)) {
+            for (SegmentCommitInfo commitInfo : SegmentInfos.readLatestCommit(dir)) {
+                SegmentInfo info = commitInfo.info;
+                if (info.getUseCompoundFile()) {
+                    try (Directory cfs = info.getCodec().compoundFormat().getCompoundReader(dir, info, IOContext.READONCE)) {
+                        for (String file : cfs.listAll()) {
+                            bytes.merge(extension(file), cfs.fileLength(file), Long::sum);
+                        }
+                    }
+                } else {
+                    for (String file : info.files()) {
+                        bytes.merge(extension(file), dir.fileLength(file), Long::sum);
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /** exec:java puts the test classpath on a class loader, not on java.class.path */
+    private static String classPath() throws Exception {
+        StringBuilder cp = new StringBuilder(System.getProperty("java.class.path"));
+        if (VectorQuantizationBenchmark.class.getClassLoader() instanceof URLClassLoader loader) {
+            for (URL url : loader.getURLs()) {
+                cp.append(File.pathSeparator).append(Path.of(url.toURI()));
+            }
+        }
+        return cp.toString();
+    }
+
+    private static String extension(String file) {
+        int dot = file.lastIndexOf('.');
+        return dot < 0 ? "" : file.substring(dot);
+    }
+
+    /** a kB field of /proc/self/status (Linux); 0 elsewhere */
+    private static long procStatusKb(String field) throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) return 0;
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith(field + ":")) {
+                return Long.parseLong(line.substring(field.length() + 1).replace("kB", "").trim());
+            }
+        }
+        return 0;
+    }
+
+    private static double percentile(long[] sortedNanos, double p) {
+        int i = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(i, sortedNanos.length - 1))] / 1_000_000.0;
+    }
+}
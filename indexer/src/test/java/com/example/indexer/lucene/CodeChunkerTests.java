@@ -0,0 +1,63 @@
+package com.example.indexer.lucene;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeChunkerTests {
+
+	@Test
+	void windowsOverlapAndCoverEveryLine() {
+		List<CodeChunker.Chunk> chunks = new CodeChunker(10, 3, false).split(lines(25));
+
+		assertEquals(List.of(1, 8, 15, 22), chunks.stream().map(CodeChunker.Chunk::startLine).toList());
+		assertEquals(List.of(10, 17, 24, 25), chunks.stream().map(CodeChunker.Chunk::endLine).toList());
+		assertTrue(chunks.get(0).text().startsWith("line 1\n"));
+		assertTrue(chunks.get(0).text().endsWith("line 10\n"));
+	}
+
+	@Test
+	void cutsBeforeTheLastDeclarationAndItsAnnotations() {
+		String code = "public class Owners {\n"      // 1
+				+ "    int a;\n"                    // 2
+				+ "    int b;\n"                    // 3
+				+ "    int c;\n"                    // 4
+				+ "    int d;\n"                    // 5
+				+ "    int e;\n"                    // 6
+				+ "    /** finds one */\n"          // 7
+				+ "    @GetMapping(\"/{id}\")\n"    // 8
+				+ "    public Owner find(long id) {\n"
+				+ "        return repo.find(id);\n"
+				+ "    }\n"
+				+ "}\n";
+
+		List<CodeChunker.Chunk> chunks = new CodeChunker(10, 3, true).split(code);
+
+		assertEquals(2, chunks.size());
+		assertEquals(6, chunks.get(0).endLine());
+		// no overlap after a declaration cut: the method starts the next chunk whole
+		assertEquals(7, chunks.get(1).startLine());
+		assertEquals(12, chunks.get(1).endLine());
+		assertTrue(chunks.get(1).text().startsWith("    /** finds one */"));
+	}
+
+	@Test
+	void emptyFileIsOneEmptyChunk() {
+		List<CodeChunker.Chunk> chunks = new CodeChunker(60, 10, true).split("");
+
+		assertEquals(1, chunks.size());
+		assertEquals(1, chunks.get(0).startLine());
+		assertEquals("", chunks.get(0).text());
+	}
+
+	private static String lines(int n) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= n; i++) {
+			sb.append("line ").append(i).append('\n');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,245 @@
+package com.example.indexer.lucene;
+
+import com.example.indexer.api.SearchPage;
+import com.example.indexer.api.SearchResult;
+import com.example.indexer.model.IndexDocument;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LuceneSearcherTests {
+
+	@TempDir
+	Path dir;
+
+	private LuceneWriter writer;
+	private LuceneSearcher searcher;
+
+	/** one shard, committed, with a searcher over it */
+	private void index(IndexDocument... docs) throws Exception {
+		writer = TestIndexes.writer(dir);
+		for (IndexDocument doc : docs) {
+			writer.updateDocument(doc);
+		}
+		writer.commit();
+		searcher = TestIndexes.searcher(writer);
+	}
+
+	/** a few repos of small files sharing a vocabulary, so queries hit many of them */
+	private static List<IndexDocument> corpus(int files) {
+		String[] words = {"owner", "pet", "visit", "repository", "service", "vet", "clinic", "find"};
+		List<IndexDocument> docs = new ArrayList<>();
+		for (int i = 0; i < files; i++) {
+			StringBuilder code = new StringBuilder("class File" + i + " {\n");
+			for (int line = 0; line < 3 + i % 5; line++) {
+				code.append("  // ").append(words[(i + line) % words.length]).append(' ')
+						.append(words[(i * 3 + line) % words.length]).append('\n');
+			}
+			code.append("}\n");
+			docs.add(TestIndexes.doc("f" + i, "repo-" + i % 4, "src/File" + i + ".java", code.toString()));
+		}
+		return docs;
+	}
+
+	private static List<String> ranking(SearchPage page) {
+		List<String> out = new ArrayList<>();
+		for (SearchResult hit : page.results) {
+			out.add(hit.getPath() + "@" + hit.getScore());
+		}
+		return out;
+	}
+
+	@AfterEach
+	void close() throws Exception {
+		if (searcher != null) searcher.shutdown();
+		if (writer != null) writer.close();
+	}
+
+	@Test
+	void snippetAndLinesComeFromTheMatchingChunk() throws Exception {
+		StringBuilder code = new StringBuilder();
+		for (int i = 1; i <= 150; i++) {
+			code.append(i == 120 ? "    String zebracorn = \"found\";\n" : "    int field" + i + " = " + i + ";\n");
+		}
+		index(TestIndexes.doc("big", "repo", "Big.java", code.toString()));
+
+		SearchPage page = searcher.search("zebracorn", 10, null);
+
+		assertEquals(1, page.results.size());
+		SearchResult hit = page.results.get(0);
+		assertTrue(hit.getStartLine() <= 120 && 120 <= hit.getEndLine(), hit.getStartLine() + "-" + hit.getEndLine());
+		assertTrue(hit.getSnippet().contains("<b>zebracorn</b>"), hit.getSnippet());
+		assertFalse(hit.getSnippet().contains("field1 "), hit.getSnippet());
+	}
+
+	@Test
+	void rerankInputsComeFromDocValuesInHitOrder() throws Exception {
+		writer = TestIndexes.writer(dir);
+		// a segment per file, so the hits span leaves
+		for (String name : new String[]{"a", "b", "c"}) {
+			writer.updateDocument(TestIndexes.doc(name, "repo-" + name, name + "/Shared.java", "class Shared {}\n"));
+			writer.commit();
+		}
+		searcher = TestIndexes.searcher(writer);
+
+		try (ShardSearchers shards = searcher.acquireShards()) {
+			ScoreDoc[] files = shards.searcher.search(new TermQuery(LuceneWriter.FILE), 10).scoreDocs;
+			ScoreDoc[] reversed = {files[2], files[0], files[1]};
+			CandidateSignals signals = CandidateSignals.load(shards.searcher, reversed);
+
+			for (int i = 0; i < reversed.length; i++) {
+				Document stored = shards.searcher.storedFields().document(reversed[i].doc);
+				assertEquals(stored.get("id"), signals.ids[i]);
+				assertEquals(stored.get("path"), signals.paths[i]);
+				assertEquals(stored.get("repo"), signals.repos[i]);
+			}
+		}
+
+		// the page's stored hash is loaded for returned hits only, and is the indexed one
+		SearchPage page = searcher.search("shared", 10, null);
+		assertEquals(3, page.results.size());
+		for (SearchResult hit : page.results) {
+			String id = hit.getPath().substring(0, 1);
+			assertEquals("repo-" + id, hit.getRepo());
+			assertEquals(TestIndexes.doc(id, "", "", "class Shared {}\n").getHash(), hit.getHash());
+		}
+	}
+
+	@Test
+	void indexTimeSignalsBoostByQueryIntent() throws Exception {
+		index(TestIndexes.doc("ctl", "repo", "src/main/OwnerController.java",
+						"@RestController\nclass OwnerController {\n  @GetMapping(\"/owners\")\n  Owner owner() { return null; } // mapping\n}\n"),
+				TestIndexes.doc("svc", "repo", "src/main/owner/mapping/OwnerMapping.java",
+						"@RestController\nclass OwnerMapping {\n  // owner mapping, owner mapping, owner mapping, owner mapping\n  Owner owner;\n}\n"),
+				TestIndexes.doc("tst", "repo", "src/test/OwnerLookupTests.java",
+						"class OwnerLookupTests {\n  // owner lookup owner lookup owner lookup\n}\n"),
+				TestIndexes.doc("main", "repo", "src/main/OwnerLookup.java",
+						"class OwnerLookup {\n  Owner owner;\n  void lookup() {}\n}\n"));
+
+		// endpoint intent: a controller with request mappings beats one matching in path and code more often
+		assertEquals("src/main/OwnerController.java", searcher.search("owner mapping", 10, null).results.get(0).getPath());
+
+		// code intent: tests are demoted below the code they exercise
+		assertEquals("src/main/OwnerLookup.java", searcher.search("owner lookup", 10, null).results.get(0).getPath());
+	}
+
+	@Test
+	void cachedPagesAreDroppedWhenTheReaderRefreshes() throws Exception {
+		index(TestIndexes.doc("a", "repo", "A.java", "class Alpha {}\n"));
+
+		SearchPage first = searcher.search("alpha", 10, null);
+		assertEquals(1, first.results.size());
+		// whitespace-normalised query, same reader: served from the cache
+		assertSame(first, searcher.search("  alpha ", 10, null));
+
+		writer.updateDocument(TestIndexes.doc("b", "repo", "B.java", "class AlphaBeta { Alpha a; }\n"));
+		writer.commit();
+
+		SearchPage refreshed = searcher.search("alpha", 10, null);
+		assertNotSame(first, refreshed);
+		assertEquals(2, refreshed.results.size());
+	}
+
+	@Test
+	void shardedSearchMatchesASingleIndex() throws Exception {
+		writer = TestIndexes.writer(dir.resolve("single"));
+		LuceneWriter sharded = TestIndexes.writer(dir.resolve("sharded"), 3, 500);
+		LuceneSearcher shardedSearcher = null;
+		try {
+			for (IndexDocument doc : corpus(40)) {
+				writer.updateDocument(doc);
+				sharded.updateDocument(doc);
+			}
+			writer.commit();
+			sharded.commit();
+			searcher = TestIndexes.searcher(writer);
+			shardedSearcher = TestIndexes.searcher(sharded);
+
+			for (String q : new String[]{"owner", "visit repository", "pet"}) {
+				assertEquals(ranking(searcher.search(q, 20, null)), ranking(shardedSearcher.search(q, 20, null)), q);
+			}
+		} finally {
+			if (shardedSearcher != null) shardedSearcher.shutdown();
+			sharded.close();
+		}
+	}
+
+	@Test
+	void slicedConcurrentCollectionMatchesSequential() throws Exception {
+		writer = TestIndexes.writer(dir, 2, 500);
+		List<IndexDocument> docs = corpus(60);
+		for (int i = 0; i < docs.size(); i++) {
+			writer.updateDocument(docs.get(i));
+			// many small segments
+			if (i % 5 == 4) writer.commit();
+		}
+		writer.commit();
+		searcher = TestIndexes.searcher(writer);
+		LuceneSearcher sliced = TestIndexes.searcher(writer, 4, 8, 60_000);
+		try {
+			try (ShardSearchers shards = sliced.acquireShards()) {
+				assertTrue(shards.bounded(Deadline.in(60_000)).getSlices().length > 2);
+			}
+			for (String q : new String[]{"owner", "visit repository", "clinic"}) {
+				assertEquals(ranking(searcher.search(q, 20, null)), ranking(sliced.search(q, 20, null)), q);
+			}
+		} finally {
+			sliced.shutdown();
+		}
+	}
+
+	@Test
+	void phasesPastTheDeadlineMarkTheResultPartial() throws Exception {
+		index(corpus(20).toArray(new IndexDocument[0]));
+		Query query = searcher.buildQuery("owner");
+
+		try (ShardSearchers shards = searcher.acquireShards()) {
+			Deadline live = Deadline.in(60_000);
+			assertTrue(searcher.lexicalCandidates(shards, query, QueryIntent.CODE, 10, live).scoreDocs.length > 0);
+			assertFalse(live.partial());
+
+			Deadline expired = Deadline.in(0);
+			searcher.lexicalCandidates(shards, query, QueryIntent.CODE, 10, expired);
+			assertTrue(expired.partial());
+
+			// snippets are skipped rather than computed late
+			expired = Deadline.in(0);
+			List<SearchResult> page = new ArrayList<>(List.of(new SearchResult("p", 1f, null, "r", 1, 1, "h")));
+			ScoreDoc chunk = shards.searcher.search(new TermQuery(LuceneWriter.CHUNK), 1).scoreDocs[0];
+			searcher.highlightPage(shards, query, new int[]{chunk.doc}, page, expired);
+			assertTrue(expired.partial());
+			assertNull(page.get(0).getSnippet());
+		}
+	}
+
+	@Test
+	void regexThatBacktracksPastTheBudgetReturnsAPartialPage() throws Exception {
+		writer = TestIndexes.writer(dir);
+		writer.updateDocument(TestIndexes.doc("a", "repo", "A.java", "a".repeat(60) + "!\n"));
+		writer.commit();
+		searcher = TestIndexes.searcher(writer, 1, 100_000, 50);
+
+		// a backreference defeats the JDK's loop memoization: exponential backtracking on a run of a's
+		SearchPage page = assertTimeoutPreemptively(Duration.ofSeconds(10),
+				() -> searcher.regexSearch("(a+)+\\1$", 10, 50L));
+		assertTrue(page.partial);
+		assertTrue(page.results.isEmpty());
+	}
+}
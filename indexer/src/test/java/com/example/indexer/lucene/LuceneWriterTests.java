@@ -0,0 +1,211 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiBits;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LuceneWriterTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void documentsAreCommittedAsOneBatch() throws Exception {
+		LuceneWriter writer = TestIndexes.writer(dir, 1, 3);
+		try {
+			AtomicInteger commits = new AtomicInteger();
+			writer.addCommitListener(commits::incrementAndGet);
+
+			writer.updateDocument(TestIndexes.doc("a", "repo", "A.java", "class A {}\n"));
+			writer.updateDocument(TestIndexes.doc("b", "repo", "B.java", "class B {}\n"));
+			assertFalse(writer.isCommitDue());
+			assertEquals(0, committedFiles());
+
+			writer.updateDocument(TestIndexes.doc("c", "repo", "C.java", "class C {}\n"));
+			assertTrue(writer.isCommitDue());
+			writer.commit();
+
+			assertFalse(writer.isCommitDue());
+			assertEquals(3, committedFiles());
+			assertEquals(1, commits.get());
+
+			// nothing pending: no empty commit
+			writer.commit();
+			assertEquals(1, commits.get());
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	void unchangedFilesAreSkippedFromTheHashCache() throws Exception {
+		LuceneWriter writer = TestIndexes.writer(dir);
+		try {
+			writer.updateDocument(TestIndexes.doc("a", "repo", "A.java", "class A {}\n"));
+			writer.updateDocument(TestIndexes.doc("a", "repo", "A.java", "class A {}\n"));
+			writer.updateDocument(TestIndexes.doc("a", "repo", "A.java", "class A { int x; }\n"));
+			writer.commit();
+
+			IndexingStats.Totals totals = writer.getStats().totals();
+			assertEquals(2, totals.indexed());
+			assertEquals(1, totals.skipped());
+		} finally {
+			writer.close();
+		}
+		// the changed file replaced its block: one live copy, holding the new code
+		assertEquals(1, committedFiles());
+		assertEquals("class A { int x; }\n", storedCode("a"));
+
+		// a reopened writer warms the cache from the index
+		writer = TestIndexes.writer(dir);
+		try {
+			writer.updateDocument(TestIndexes.doc("a", "repo", "A.java", "class A { int x; }\n"));
+			assertEquals(1, writer.getStats().totals().skipped());
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	void refusesToStartOnAnIndexThatNeedsMigration() throws Exception {
+		writeLegacyIndex();
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> TestIndexes.writer(dir));
+		assertTrue(e.getMessage().contains("--indexer.compact=true"), e.getMessage());
+
+		// the shards were released: the migration can open the index right after
+		TestIndexes.migrator(dir).close();
+	}
+
+	@Test
+	void migratesAnIndexWrittenWithTheOriginalFlatSchema() throws Exception {
+		writeLegacyIndex();
+
+		LuceneWriter writer = TestIndexes.migrator(dir);
+		try {
+			assertTrue(needsMigration());
+
+			assertEquals(2, writer.migrate());
+			assertFalse(needsMigration());
+			assertEquals("class New {}\n", storedCode("a"));
+			assertEquals("class Other {}\n", storedCode("b"));
+
+			// what failed before: writing the current schema into the index
+			writer.updateDocument(TestIndexes.doc("c", "repo", "C.java", "class C {}\n"));
+			writer.commit();
+		} finally {
+			writer.close();
+		}
+		try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(dir))) {
+			assertEquals(3, reader.docFreq(LuceneWriter.FILE));
+		}
+	}
+
+	@Test
+	void migrationPutsChunkedFilesBackTogether() throws Exception {
+		StringBuilder code = new StringBuilder();
+		for (int i = 1; i <= 150; i++) {
+			code.append("    int field").append(i).append(" = ").append(i).append(";\n");
+		}
+
+		LuceneWriter writer = TestIndexes.writer(dir);
+		try {
+			writer.updateDocument(TestIndexes.doc("big", "repo", "Big.java", code.toString()));
+			writer.commit();
+
+			assertEquals(1, writer.migrate());
+		} finally {
+			writer.close();
+		}
+		assertEquals(code.toString(), storedCode("big"));
+	}
+
+	/** as the first version wrote it: one flat document per file, appended, no doc values */
+	private void writeLegacyIndex() throws Exception {
+		try (IndexWriter legacy = new IndexWriter(FSDirectory.open(dir), new IndexWriterConfig(new StandardAnalyzer()))) {
+			legacy.addDocument(flatDocument("a", "class Old {}\n", "h1"));
+			legacy.addDocument(flatDocument("b", "class Other {}\n", "h2"));
+			legacy.addDocument(flatDocument("a", "class New {}\n", "h3"));
+		}
+	}
+
+	private int committedFiles() throws Exception {
+		if (!DirectoryReader.indexExists(FSDirectory.open(dir))) return 0;
+		try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(dir))) {
+			return reader.docFreq(LuceneWriter.FILE);
+		}
+	}
+
+	private boolean needsMigration() throws Exception {
+		try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(dir))) {
+			return LuceneWriter.needsMigration(reader);
+		}
+	}
+
+	/** the file's code from its block's chunks, as the migration reads it */
+	private String storedCode(String id) throws Exception {
+		try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(dir))) {
+			StoredFields stored = reader.storedFields();
+			Bits live = MultiBits.getLiveDocs(reader);
+			List<Document> chunks = new ArrayList<>();
+			for (int doc = 0; doc < reader.maxDoc(); doc++) {
+				if (live != null && !live.get(doc)) continue;
+				Document d = stored.document(doc);
+				if (d.get("id") == null) {
+					chunks.add(d);
+				} else if (d.get("id").equals(id)) {
+					return LuceneWriter.joinChunks(chunks);
+				} else {
+					chunks.clear();
+				}
+			}
+			return null;
+		}
+	}
+
+	private static Document flatDocument(String id, String code, String hash) {
+		FieldType keyword = new FieldType();
+		keyword.setIndexOptions(IndexOptions.DOCS);
+		keyword.setStored(true);
+		keyword.setTokenized(false);
+		FieldType codeType = new FieldType();
+		codeType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+		codeType.setStored(true);
+		codeType.setTokenized(true);
+
+		Document doc = new Document();
+		doc.add(new StringField("id", id, Field.Store.YES));
+		doc.add(new Field("path", id + ".java", keyword));
+		doc.add(new Field("repo", "repo", keyword));
+		doc.add(new Field("code", code, codeType));
+		doc.add(new TextField("lang", "java", Field.Store.YES));
+		doc.add(new StringField("hash", hash, Field.Store.YES));
+		doc.add(new TextField("symbols", code, Field.Store.NO));
+		doc.add(new StringField("is_controller", "false", Field.Store.YES));
+		doc.add(new StringField("has_mapping", "false", Field.Store.YES));
+		return doc;
+	}
+}
@@ -0,0 +1,53 @@
+package com.example.indexer.lucene;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RankedCandidatesTests {
+
+	@Test
+	void cursorRoundTrips() {
+		SearchCursor cursor = new SearchCursor(3.25f, "/repo/src/Foo|Bar.java");
+		assertEquals(cursor, SearchCursor.decode(cursor.encode()));
+	}
+
+	@Test
+	void malformedCursorIsRejected() {
+		assertThrows(SearchCursor.InvalidCursorException.class, () -> SearchCursor.decode("not a cursor!"));
+		assertThrows(SearchCursor.InvalidCursorException.class, () -> SearchCursor.decode("MTIz"));
+	}
+
+	@Test
+	void pagingResumesAfterCursorIncludingTies() {
+		List<Candidate> sorted = new ArrayList<>(List.of(
+				new Candidate(0, 5f, "a", "a", "r"),
+				new Candidate(1, 3f, "b", "b", "r"),
+				new Candidate(2, 3f, "c", "c", "r"),
+				new Candidate(3, 1f, "d", "d", "r")));
+		sorted.sort(Candidate.RANK_ORDER);
+
+		RankedCandidates ranked = RankedCandidates.of(sorted, 4, 200, false, 1f);
+
+		assertEquals(0, ranked.indexAfter(null));
+		assertEquals(2, ranked.indexAfter(new SearchCursor(3f, "b")));
+		assertEquals(3, ranked.indexAfter(new SearchCursor(3f, "c")));
+		// cursor from a refreshed reader whose doc no longer exists
+		assertEquals(1, ranked.indexAfter(new SearchCursor(4f, "zzz")));
+	}
+
+	@Test
+	void onlyCandidatesAboveRawFloorAreSettledWhenTruncated() {
+		List<Candidate> sorted = List.of(
+				new Candidate(0, 5f, "a", "a", "r"),
+				new Candidate(1, 2f, "b", "b", "r"),
+				new Candidate(2, 1f, "c", "c", "r"));
+
+		assertEquals(1, RankedCandidates.of(sorted, 10, 3, true, 2f).settled());
+		assertEquals(3, RankedCandidates.of(sorted, 3, 3, false, 2f).settled());
+	}
+}
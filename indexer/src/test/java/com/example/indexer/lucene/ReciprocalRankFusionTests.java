@@ -0,0 +1,45 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReciprocalRankFusionTests {
+
+	@Test
+	void docsInBothListsRiseAboveSingleListLeaders() {
+		ScoreDoc[] lexical = {new ScoreDoc(1, 12f), new ScoreDoc(2, 9f), new ScoreDoc(3, 4f)};
+		ScoreDoc[] vector = {new ScoreDoc(4, 0.9f), new ScoreDoc(2, 0.8f)};
+
+		ScoreDoc[] fused = ReciprocalRankFusion.fuse(60, lexical, vector);
+
+		assertArrayEquals(new int[]{2, 1, 4, 3}, docs(fused));
+		assertEquals(1f / 62 + 1f / 62, fused[0].score, 1e-6);
+		// equal ranks in different lists tie; doc id breaks it
+		assertEquals(fused[1].score, fused[2].score, 1e-6);
+	}
+
+	@Test
+	void ceilingBoundsEveryDocBeyondTheLexicalPool() {
+		ScoreDoc[] lexical = {new ScoreDoc(1, 3f), new ScoreDoc(2, 2f)};
+		ScoreDoc[] vector = {new ScoreDoc(9, 0.9f)};
+		float ceiling = ReciprocalRankFusion.ceilingBeyond(60, lexical.length, 2);
+
+		// doc 9 turning up as lexical rank 3 is the best an uncollected hit can do
+		ScoreDoc[] widened = {lexical[0], lexical[1], new ScoreDoc(9, 1f)};
+		ScoreDoc[] fused = ReciprocalRankFusion.fuse(60, widened, vector);
+		assertEquals(ceiling, fused[0].score, 1e-6);
+		assertTrue(ReciprocalRankFusion.fuse(60, lexical, vector)[0].score < ceiling);
+	}
+
+	private static int[] docs(ScoreDoc[] hits) {
+		int[] out = new int[hits.length];
+		for (int i = 0; i < hits.length; i++) {
+			out[i] = hits[i].doc;
+		}
+		return out;
+	}
+}
@@ -0,0 +1,100 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegexTrigramsTests {
+
+	private static final List<String> TEXTS = List.of(
+			"public Optional<Owner> findOwnerById(long ownerId) {",
+			"    @GetMapping(\"/owners/{id}\")",
+			"List<Pet> items = pet_repository.findAll();",
+			"return repo.findByLastNameIgnoreCase(name);",
+			"int x = 42; // TODO remove",
+			"SAVE_PET_BY_VET_ID");
+
+	private static final List<String> REGEXES = List.of(
+			"findBy\\w+Id",
+			"find(Owner|Pet)ById",
+			"(?i)save_pet",
+			"@(Get|Post)Mapping\\(\"/owners",
+			"^\\s*return\\b.*;$",
+			"[Ff]ind[AB]ll",
+			"pet_?repo(sitory)?",
+			"ownerId\\)",
+			"TODO|FIXME",
+			"x = \\d+",
+			"(\\w+)\\.\\1",
+			"items\\s*=\\s*pet",
+			"\\Qrepo.find\\E",
+			"Optional<[A-Z][a-z]+>",
+			"(?x) find Owner");
+
+	@Test
+	void literalNeedsAllItsTrigrams() {
+		assertEquals("fin AND ind AND ndo AND dow AND own AND wne AND ner",
+				RegexTrigrams.required("findOwner").toString());
+	}
+
+	@Test
+	void alternationAndClassesStayExactWhileSmall() {
+		assertEquals("(fin AND ind AND ndo AND dow AND own AND wne AND ner) OR (fin AND ind AND ndp AND dpe AND pet)",
+				RegexTrigrams.required("find(Owner|Pet)").toString());
+		assertEquals("(get AND etm AND tma) OR (pos AND ost AND stm AND tma)",
+				RegexTrigrams.required("(Get|Post)Ma").toString());
+	}
+
+	@Test
+	void unknownPartsOnlyCostTheirOwnTrigrams() {
+		assertEquals("fin AND ind AND ndb AND dby", RegexTrigrams.required("findBy\\w+Id").toString());
+		assertEquals("*", RegexTrigrams.required("\\w+Id").toString());
+		assertEquals("*", RegexTrigrams.required("(?x) find Owner").toString());
+	}
+
+	@Test
+	void neverRejectsATextTheRegexMatches() throws Exception {
+		Analyzer analyzer = new SearchAnalyzer().buildForIndexing();
+		for (String text : TEXTS) {
+			Set<String> grams = trigrams(analyzer, text);
+			for (String regex : REGEXES) {
+				if (Pattern.compile(regex, Pattern.MULTILINE).matcher(text).find()) {
+					assertTrue(RegexTrigrams.required(regex).accepts(grams), regex + " on " + text);
+				}
+			}
+		}
+	}
+
+	@Test
+	void rejectsTextsWithoutTheRequiredTrigrams() throws Exception {
+		Analyzer analyzer = new SearchAnalyzer().buildForIndexing();
+		Set<String> grams = trigrams(analyzer, "List<Pet> items = pet_repository.findAll();");
+
+		assertFalse(RegexTrigrams.required("findBy\\w+Id").accepts(grams));
+		assertFalse(RegexTrigrams.required("@(Get|Post)Mapping").accepts(grams));
+		assertTrue(RegexTrigrams.required("[Ff]ind[AB]ll").accepts(grams));
+	}
+
+	private static Set<String> trigrams(Analyzer analyzer, String text) throws Exception {
+		Set<String> grams = new HashSet<>();
+		try (TokenStream stream = analyzer.tokenStream(SearchAnalyzer.TRIGRAMS, text)) {
+			CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken()) {
+				grams.add(term.toString());
+			}
+			stream.end();
+		}
+		return grams;
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.indexer.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchAnalyzerTests {
+
+	@Test
+	void splitsIdentifiersAndKeepsTheOriginal() throws Exception {
+		List<String> terms = terms(new SearchAnalyzer().buildForIndexing(), "code", "repo.findOwnerById(owner_id2)");
+
+		assertTrue(terms.containsAll(List.of("repo", "findownerbyid", "find", "owner", "by", "id",
+				"owner_id2", "2")), terms.toString());
+	}
+
+	@Test
+	void keepsAnnotationsWholeWithAndWithoutTheAt() throws Exception {
+		List<String> terms = terms(new SearchAnalyzer().buildForIndexing(), "code", "@GetMapping(\"/owners\")");
+
+		assertEquals(List.of("@getmapping", "getmapping", "owners"), terms);
+	}
+
+	@Test
+	void symbolsAreWholeIdentifiersWithoutKeywords() throws Exception {
+		List<String> terms = terms(new SearchAnalyzer().build(), SearchAnalyzer.SYMBOLS,
+				"public class OwnerController { private void list() { return; } }");
+
+		assertEquals(List.of("ownercontroller", "list"), terms);
+	}
+
+	@Test
+	void camelCaseQueryMatchesLongerIdentifier() throws Exception {
+		SearchAnalyzer analyzer = new SearchAnalyzer();
+		try (Directory dir = new ByteBuffersDirectory()) {
+			try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(analyzer.buildForIndexing()))) {
+				Document doc = new Document();
+				doc.add(new TextField("code", "return ownerRepository.findOwnerById(id);", Field.Store.NO));
+				writer.addDocument(doc);
+			}
+			try (DirectoryReader reader = DirectoryReader.open(dir)) {
+				IndexSearcher searcher = new IndexSearcher(reader);
+				QueryParser parser = new QueryParser("code", analyzer.build());
+
+				assertEquals(1, searcher.count(parser.parse("findOwner")));
+				assertEquals(1, searcher.count(parser.parse("owner_repository")));
+				assertFalse(searcher.count(parser.parse("findPet")) > 0);
+			}
+		}
+	}
+
+	private static List<String> terms(Analyzer analyzer, String field, String text) throws Exception {
+		List<String> terms = new ArrayList<>();
+		try (TokenStream stream = analyzer.tokenStream(field, text)) {
+			CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken()) {
+				terms.add(term.toString());
+			}
+			stream.end();
+		}
+		return terms;
+	}
+}
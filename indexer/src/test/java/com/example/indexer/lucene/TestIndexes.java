@@ -0,0 +1,55 @@
+package com.example.indexer.lucene;
+
+import com.example.indexer.model.IndexDocument;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HexFormat;
+
+/** Writers and searchers over a temporary directory, embeddings off, for index behaviour tests. */
+final class TestIndexes {
+
+	private TestIndexes() {
+	}
+
+	static LuceneWriter writer(Path dir) throws IOException {
+		return writer(dir, 1, 500);
+	}
+
+	static LuceneWriter writer(Path dir, int shards, int commitBatchSize) throws IOException {
+		return writer(dir, shards, commitBatchSize, false);
+	}
+
+	/** as started with --indexer.compact=true: opens an index that predates the schema */
+	static LuceneWriter migrator(Path dir) throws IOException {
+		return writer(dir, 1, 500, true);
+	}
+
+	private static LuceneWriter writer(Path dir, int shards, int commitBatchSize, boolean migrating) throws IOException {
+		return new LuceneWriter(new SearchAnalyzer(), new DefaultRankSignalExtractor(),
+				new CodeChunker(60, 10, true), null, false, 60_000, "none", false,
+				dir.toString(), shards, "id", commitBatchSize, 60_000, migrating);
+	}
+
+	/** refreshed only on commit (and every minute), one search thread, a generous budget */
+	static LuceneSearcher searcher(LuceneWriter writer) throws IOException {
+		return searcher(writer, 1, 100_000, 60_000);
+	}
+
+	static LuceneSearcher searcher(LuceneWriter writer, int threads, int sliceMaxDocs, long budgetMs)
+			throws IOException {
+		return new LuceneSearcher(new SearchAnalyzer(), writer, 60_000, 1000, threads, sliceMaxDocs, 1,
+				budgetMs, Math.max(budgetMs, 2000), 100, 200, 3, budgetMs, 60);
+	}
+
+	static IndexDocument doc(String id, String repo, String path, String code) {
+		IndexDocument doc = new IndexDocument();
+		doc.setId(id);
+		doc.setRepo(repo);
+		doc.setPath(path);
+		doc.setLang("java");
+		doc.setCode(code);
+		doc.setHash(HexFormat.of().formatHex(Integer.toString(code.hashCode()).getBytes()));
+		return doc;
+	}
+}
@@ -0,0 +1,194 @@
+package com.example.indexer.semantic;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BatchingEmbedder + SemanticEmbeddingClient against a local stub of the
+ * /embeddings endpoint. The stub's vector for a text is [length, 1, 0, 0].
+ */
+class BatchingEmbedderTests {
+
+	private static final int DIMENSION = 4;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+	private final AtomicInteger failuresLeft = new AtomicInteger();
+	private volatile int failureStatus = 503;
+
+	private HttpServer server;
+
+	@TempDir
+	Path cacheDir;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/v1/embeddings", exchange -> {
+			JsonNode request = mapper.readTree(exchange.getRequestBody().readAllBytes());
+			JsonNode input = request.get("input");
+			batchSizes.add(input.size());
+
+			byte[] body;
+			int status = 200;
+			if (failuresLeft.getAndDecrement() > 0) {
+				status = failureStatus;
+				body = "{}".getBytes(StandardCharsets.UTF_8);
+			} else {
+				StringBuilder sb = new StringBuilder("{\"data\":[");
+				for (int i = 0; i < input.size(); i++) {
+					if (i > 0) sb.append(',');
+					sb.append("{\"index\":").append(i)
+							.append(",\"embedding\":[").append(input.get(i).asString().length()).append(",1,0,0]}");
+				}
+				body = sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+			}
+			exchange.sendResponseHeaders(status, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopStub() {
+		server.stop(0);
+	}
+
+	private BatchingEmbedder embedder(String dir, long lingerMs) throws Exception {
+		return embedder(dir, lingerMs, DIMENSION);
+	}
+
+	/** a configured dimension other than DIMENSION mismatches what the stub returns */
+	private BatchingEmbedder embedder(String dir, long lingerMs, int dimension) throws Exception {
+		SemanticEmbeddingClient client = new SemanticEmbeddingClient(
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/v1/embeddings",
+				"test-key", "stub-model", dimension, 5_000);
+		return new BatchingEmbedder(client, dir, 64, lingerMs, 2, 4, 1);
+	}
+
+	@Test
+	void coalescesQueuedTextsIntoOneRequest() throws Exception {
+		BatchingEmbedder embedder = embedder("", 200);
+
+		List<CompletableFuture<float[]>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(embedder.embed("hash-" + i, "x".repeat(i + 1)));
+		}
+		for (int i = 0; i < 10; i++) {
+			assertArrayEquals(new float[]{i + 1, 1, 0, 0}, futures.get(i).get(5, TimeUnit.SECONDS));
+		}
+
+		assertEquals(List.of(10), batchSizes);
+		embedder.close();
+	}
+
+	@Test
+	void sameHashIsEmbeddedOnce() throws Exception {
+		BatchingEmbedder embedder = embedder("", 50);
+
+		CompletableFuture<float[]> a = embedder.embed("same", "abc");
+		CompletableFuture<float[]> b = embedder.embed("same", "abc");
+		a.get(5, TimeUnit.SECONDS);
+		b.get(5, TimeUnit.SECONDS);
+		embedder.embed("same", "abc").get(5, TimeUnit.SECONDS);
+
+		assertEquals(List.of(1), batchSizes);
+		embedder.close();
+	}
+
+	@Test
+	void concurrentRequestsForOneHashNeverRequeueIt() throws Exception {
+		BatchingEmbedder embedder = embedder("", 0);
+
+		// callers that miss the cache just as the first request completes must find it there
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 200; i++) {
+					embedder.embed("same", "abc").join();
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(List.of(1), batchSizes);
+		embedder.close();
+	}
+
+	@Test
+	void vectorsOfTheWrongDimensionFailTheirDocument() throws Exception {
+		BatchingEmbedder embedder = embedder(cacheDir.toString(), 0, DIMENSION * 2);
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> embedder.embed("h", "abc").get(5, TimeUnit.SECONDS));
+		assertInstanceOf(IOException.class, e.getCause());
+		assertTrue(e.getCause().getMessage().contains("dimension"), e.getCause().getMessage());
+
+		// not cached as if it were good: asking again goes back to the provider
+		assertThrows(ExecutionException.class, () -> embedder.embed("h", "abc").get(5, TimeUnit.SECONDS));
+		assertEquals(2, batchSizes.size());
+		embedder.close();
+	}
+
+	@Test
+	void retriesServerErrorsWithBackoff() throws Exception {
+		failuresLeft.set(2);
+		BatchingEmbedder embedder = embedder("", 0);
+
+		assertArrayEquals(new float[]{3, 1, 0, 0}, embedder.embed("h", "abc").get(5, TimeUnit.SECONDS));
+		assertEquals(3, batchSizes.size());
+		embedder.close();
+	}
+
+	@Test
+	void clientErrorsFailWithoutRetry() throws Exception {
+		failuresLeft.set(1);
+		failureStatus = 400;
+		BatchingEmbedder embedder = embedder("", 0);
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> embedder.embed("h", "abc").get(5, TimeUnit.SECONDS));
+		assertInstanceOf(EmbeddingHttpException.class, e.getCause());
+		assertEquals(1, batchSizes.size());
+		embedder.close();
+	}
+
+	@Test
+	void persistedCacheSurvivesRestart() throws Exception {
+		BatchingEmbedder first = embedder(cacheDir.toString(), 0);
+		float[] vector = first.embed("content-hash", "hello").get(5, TimeUnit.SECONDS);
+		first.close();
+
+		BatchingEmbedder second = embedder(cacheDir.toString(), 0);
+		assertArrayEquals(vector, second.embed("content-hash", "hello").get(5, TimeUnit.SECONDS));
+		assertEquals(1, batchSizes.size());
+		second.close();
+	}
+}